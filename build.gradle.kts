@@ -13,6 +13,14 @@ java {
   withJavadocJar()
 }
 
+// JMH benchmarks for the class loading hot paths, run with ./gradlew jmh (pass JMH options with -PjmhArgs="...")
+val jmh: SourceSet by sourceSets.creating {
+  compileClasspath += sourceSets["main"].output
+  runtimeClasspath += sourceSets["main"].output
+}
+
+configurations["jmhImplementation"].extendsFrom(configurations["implementation"])
+
 repositories {
   maven { url = uri("https://libraries.minecraft.net/") }
   maven {
@@ -31,8 +39,48 @@ dependencies {
   api("org.lwjgl.lwjgl:lwjgl:2.9.4-nightly-20150209")
   api("org.apache.logging.log4j:log4j-core:2.0-beta9-fixed")
   api("org.apache.logging.log4j:log4j-api:2.0-beta9-fixed")
+
+  "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+  "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+  group = "verification"
+  description = "Runs the JMH benchmarks."
+  classpath = jmh.runtimeClasspath
+  mainClass.set("org.openjdk.jmh.Main")
+  javaLauncher.set(javaToolchains.launcherFor(java.toolchain))
+  val resultFile = layout.buildDirectory.file("reports/jmh/results.json")
+  argumentProviders.add(CommandLineArgumentProvider {
+    listOf("-rf", "json", "-rff", resultFile.get().asFile.apply { parentFile.mkdirs() }.path) +
+      (providers.gradleProperty("jmhArgs").orNull?.split(' ')?.filter { it.isNotEmpty() } ?: emptyList())
+  })
 }
 
+tasks.register<JavaExec>("modpackBenchmark") {
+  group = "verification"
+  description = "Launches a generated modpack through Launch.main and reports startup cost."
+  classpath = jmh.runtimeClasspath
+  mainClass.set("net.minecraft.launchwrapper.ModpackBenchmark")
+  javaLauncher.set(javaToolchains.launcherFor(java.toolchain))
+  argumentProviders.add(CommandLineArgumentProvider {
+    providers.gradleProperty("modpackArgs").orNull?.split(' ')?.filter { it.isNotEmpty() } ?: emptyList()
+  })
+}
+
+tasks.register<JavaExec>("parallelLoadStress") {
+  group = "verification"
+  description = "Loads thousands of synthetic classes from many threads at once and checks each is transformed once."
+  classpath = jmh.runtimeClasspath
+  mainClass.set("net.minecraft.launchwrapper.ParallelLoadStress")
+  javaLauncher.set(javaToolchains.launcherFor(java.toolchain))
+  argumentProviders.add(CommandLineArgumentProvider {
+    providers.gradleProperty("stressArgs").orNull?.split(' ')?.filter { it.isNotEmpty() } ?: emptyList()
+  })
+}
+
+tasks.named("check") { dependsOn("parallelLoadStress") }
+
 group = "net.minecraft"
 
 version = "1.12"
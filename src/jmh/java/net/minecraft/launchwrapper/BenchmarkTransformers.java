@@ -0,0 +1,81 @@
+package net.minecraft.launchwrapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/** Transformers registered by the benchmarks. They live in this package so LaunchClassLoader leaves them alone. */
+public final class BenchmarkTransformers {
+    private BenchmarkTransformers() {}
+
+    /** Returns its input, like most transformers do for classes they do not care about. */
+    public static final class NoOp implements IClassTransformer {
+        @Override
+        public byte[] transform(String name, String transformedName, byte[] basicClass) {
+            return basicClass;
+        }
+    }
+
+    /** Parses and rewrites every class, the usual shape of a coremod transformer. */
+    public static final class Asm implements IClassTransformer {
+        @Override
+        public byte[] transform(String name, String transformedName, byte[] basicClass) {
+            if (basicClass == null) {
+                return null;
+            }
+            final ClassNode classNode = new ClassNode();
+            new ClassReader(basicClass).accept(classNode, 0);
+            final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            classNode.accept(writer);
+            return writer.toByteArray();
+        }
+    }
+
+    /** Changes every class through the shared ClassNode. */
+    public static final class Node implements IClassNodeTransformer {
+        @Override
+        public boolean transform(String name, String transformedName, ClassNode classNode) {
+            // report a change so the shared node is written back like a real patch would be
+            return true;
+        }
+    }
+
+    /** Maps {@code bench.obf.a<i>} to {@code bench.p0.C<i>}, like a deobfuscation mapping of the given size. */
+    public static class Renamer implements IClassTransformer, IClassNameTransformer {
+        static final int MAPPINGS = 10000;
+        final Map<String, String> remap = new HashMap<>();
+        private final Map<String, String> unmap = new HashMap<>();
+
+        public Renamer() {
+            for (int i = 0; i < MAPPINGS; i++) {
+                remap.put("bench.obf.a" + i, "bench.p0.C" + i);
+                unmap.put("bench.p0.C" + i, "bench.obf.a" + i);
+            }
+        }
+
+        @Override
+        public String remapClassName(String name) {
+            return remap.getOrDefault(name, name);
+        }
+
+        @Override
+        public String unmapClassName(String name) {
+            return unmap.getOrDefault(name, name);
+        }
+
+        @Override
+        public byte[] transform(String name, String transformedName, byte[] basicClass) {
+            return basicClass;
+        }
+    }
+
+    /** The same mapping, published to LaunchClassLoader so it can memoize it. */
+    public static final class MappedRenamer extends Renamer implements IClassNameMappings {
+        @Override
+        public Map<String, String> getClassNameMappings() {
+            return remap;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.minecraft.launchwrapper;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * LaunchClassLoader.findClass for classes it already defined, for names that are not on the classpath, and for
+ * defining a whole jar's worth of classes in a fresh loader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindClassBenchmark {
+    private static final int CLASSES = 1024;
+
+    private SyntheticClasspath classpath;
+    private LaunchClassLoader loader;
+    private String[] names;
+    private String[] missing;
+    private int next;
+
+    @Setup
+    public void setUp() throws ClassNotFoundException, IOException {
+        classpath = new SyntheticClasspath(1, CLASSES);
+        names = classpath.classNames.toArray(new String[0]);
+        missing = new String[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            missing[i] = "bench.missing.M" + i;
+        }
+        loader = classpath.newLoader();
+        for (String name : names) {
+            loader.findClass(name);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loader.close();
+        classpath.close();
+    }
+
+    @Benchmark
+    public Class<?> cacheHit() throws ClassNotFoundException {
+        return loader.findClass(names[next++ & (CLASSES - 1)]);
+    }
+
+    @Benchmark
+    public Object cacheMiss() {
+        try {
+            return loader.findClass(missing[next++ & (CLASSES - 1)]);
+        } catch (ClassNotFoundException e) {
+            return e;
+        }
+    }
+
+    /** Defines every class of the jar in a loader that has not seen any of them. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int defineAll(ColdLoader cold) throws ClassNotFoundException {
+        int defined = 0;
+        for (String name : names) {
+            if (cold.loader.findClass(name) != null) {
+                defined++;
+            }
+        }
+        return defined;
+    }
+
+    @State(Scope.Thread)
+    public static class ColdLoader {
+        LaunchClassLoader loader;
+
+        @Setup(Level.Invocation)
+        public void setUp(FindClassBenchmark benchmark) {
+            loader = benchmark.classpath.newLoader();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            loader.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.minecraft.launchwrapper;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** LaunchClassLoader.getClassBytes against 50 jars of 200 classes each. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetClassBytesBenchmark {
+    private static final int JARS = 50;
+    private static final int CLASSES_PER_JAR = 200;
+
+    private SyntheticClasspath classpath;
+    private LaunchClassLoader loader;
+    private String[] names;
+    private String[] missing;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        classpath = new SyntheticClasspath(JARS, CLASSES_PER_JAR);
+        names = classpath.classNames.toArray(new String[0]);
+        missing = new String[1024];
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = "bench.missing.M" + i;
+        }
+        loader = classpath.newLoader();
+        for (String name : names) {
+            loader.getClassBytes(name);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loader.close();
+        classpath.close();
+    }
+
+    @Benchmark
+    public byte[] cached() throws IOException {
+        return loader.getClassBytes(names[next++ % names.length]);
+    }
+
+    @Benchmark
+    public byte[] absent() throws IOException {
+        return loader.getClassBytes(missing[next++ & (missing.length - 1)]);
+    }
+
+    /** Reads every class once through a loader whose resource cache is empty. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public long readAll(ColdLoader cold) throws IOException {
+        long total = 0;
+        for (String name : names) {
+            total += cold.loader.getClassBytes(name).length;
+        }
+        return total;
+    }
+
+    @State(Scope.Thread)
+    public static class ColdLoader {
+        LaunchClassLoader loader;
+
+        @Setup(Level.Invocation)
+        public void setUp(GetClassBytesBenchmark benchmark) {
+            loader = benchmark.classpath.newLoader();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            loader.close();
+        }
+    }
+}
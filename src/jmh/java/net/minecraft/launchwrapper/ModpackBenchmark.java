@@ -0,0 +1,269 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * End-to-end launch benchmark. It generates a synthetic modpack: mod jars full of classes, and a jar of tweakers that
+ * cascade through the {@code TweakClasses} blackboard list and register transformers. It then runs
+ * {@link Launch#main} on that pack in fresh JVMs. The launch target loads every mod class and reports its startup
+ * time, classes per second, peak heap and allocated bytes.
+ *
+ * <pre>
+ * ./gradlew modpackBenchmark -PmodpackArgs="--jars 300 --classes 200 --tweakers 20 --transformers 40 --cost asm"
+ * </pre>
+ */
+public final class ModpackBenchmark {
+    private static final String RESULT = "MODPACK_RESULT";
+    private static final String TWEAKER_PACKAGE = "bench/tweak/T";
+
+    private ModpackBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        options.put("jars", "100");
+        options.put("classes", "200");
+        options.put("tweakers", "10");
+        options.put("transformers", "20");
+        options.put("cost", "asm");
+        options.put("runs", "5");
+        options.put("dir", new File(System.getProperty("java.io.tmpdir"), "launchwrapper-modpack").getPath());
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException(
+                        "Unknown option " + args[i] + ", expected one of " + options.keySet());
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        final int jars = Integer.parseInt(options.get("jars"));
+        final int classes = Integer.parseInt(options.get("classes"));
+        final int tweakers = Integer.parseInt(options.get("tweakers"));
+        final int runs = Integer.parseInt(options.get("runs"));
+        final File directory = new File(options.get("dir"));
+
+        System.out.printf(
+                "Generating %d jars of %d classes and %d tweakers in %s%n", jars, classes, tweakers, directory);
+        final List<File> classpath = generate(directory, jars, classes, tweakers);
+
+        final List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        for (String property : new String[] {"jars", "classes", "tweakers", "transformers", "cost"}) {
+            command.add("-Dmodpack." + property + "=" + options.get(property));
+        }
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith("legacy.")) {
+                command.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        final StringBuilder path = new StringBuilder(System.getProperty("java.class.path"));
+        for (File jar : classpath) {
+            path.append(File.pathSeparatorChar).append(jar.getPath());
+        }
+        command.addAll(Arrays.asList("-cp", path.toString(), Launch.class.getName()));
+        command.addAll(Arrays.asList("--tweakClass", TWEAKER_PACKAGE.replace('/', '.') + 0));
+        command.addAll(Arrays.asList("--gameDir", new File(directory, "game").getPath()));
+
+        final List<Map<String, Long>> results = new ArrayList<>();
+        System.out.printf(
+                "%4s %10s %10s %10s %12s %12s%n",
+                "run",
+                "wall ms",
+                "start ms",
+                "classes/s",
+                "peak heap MB",
+                "alloc MB");
+        for (int run = 1; run <= runs; run++) {
+            final long start = System.nanoTime();
+            final Map<String, Long> result = launch(command, new File(directory, "launch.log"));
+            result.put("wallMillis", (System.nanoTime() - start) / 1_000_000);
+            results.add(result);
+            print(Integer.toString(run), result);
+        }
+        final Map<String, Long> median = new HashMap<>();
+        for (String key : results.get(0).keySet()) {
+            final long[] values = results.stream().mapToLong(result -> result.get(key)).sorted().toArray();
+            median.put(key, values[values.length / 2]);
+        }
+        print("p50", median);
+    }
+
+    private static void print(String run, Map<String, Long> result) {
+        final long millis = Math.max(1, result.get("loadMillis"));
+        System.out.printf(
+                "%4s %10d %10d %10d %12.1f %12.1f%n",
+                run,
+                result.get("wallMillis"),
+                result.get("startupMillis"),
+                result.get("classes") * 1000 / millis,
+                result.get("peakHeapBytes") / 1048576.0,
+                result.get("allocatedBytes") / 1048576.0);
+    }
+
+    private static Map<String, Long> launch(List<String> command, File log) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Map<String, Long> result = null;
+        try (BufferedReader reader =
+                        new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                Writer writer = Files.newBufferedWriter(log.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.write(line);
+                writer.write('\n');
+                if (line.startsWith(RESULT)) {
+                    result = new HashMap<>();
+                    for (String pair : line.substring(RESULT.length()).trim().split(" ")) {
+                        final int equals = pair.indexOf('=');
+                        result.put(pair.substring(0, equals), Long.parseLong(pair.substring(equals + 1)));
+                    }
+                }
+            }
+        }
+        final int exit = process.waitFor();
+        if (exit != 0 || result == null) {
+            throw new IllegalStateException("Launch failed with exit code " + exit + ", see " + log);
+        }
+        return result;
+    }
+
+    /** Writes the mod jars and the tweaker jar, returning them in classpath order. */
+    private static List<File> generate(File directory, int jars, int classes, int tweakers) throws IOException {
+        final File mods = new File(directory, "mods");
+        mods.mkdirs();
+        new File(directory, "game").mkdirs();
+        final List<File> classpath = new ArrayList<>();
+        for (int j = 0; j < jars; j++) {
+            final File jar = new File(mods, "mod" + j + ".jar");
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+                for (int i = 0; i < classes; i++) {
+                    final String internalName = "bench/p" + j + "/C" + i;
+                    out.putNextEntry(new JarEntry(internalName + ".class"));
+                    out.write(SyntheticClasspath.generate(internalName));
+                    out.closeEntry();
+                }
+            }
+            classpath.add(jar);
+        }
+        final File tweakJar = new File(directory, "tweakers.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(tweakJar))) {
+            for (int k = 0; k < tweakers; k++) {
+                out.putNextEntry(new JarEntry(TWEAKER_PACKAGE + k + ".class"));
+                out.write(generateTweaker(TWEAKER_PACKAGE + k));
+                out.closeEntry();
+            }
+        }
+        classpath.add(tweakJar);
+        return classpath;
+    }
+
+    private static byte[] generateTweaker(String internalName) {
+        final String superName = CascadingTweaker.class.getName().replace('.', '/');
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, superName, null);
+        final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        method.visitCode();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Base class of the generated tweakers {@code bench.tweak.T<k>}. Tweaker k queues tweaker k + 1 and registers
+     * every transformer whose index is k modulo the number of tweakers.
+     */
+    public static class CascadingTweaker implements ITweaker {
+        @Override
+        public void acceptOptions(List<String> args, File gameDir, File assetsDir, String profile) {}
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void injectIntoClassLoader(LaunchClassLoader classLoader) {
+            final String name = getClass().getName();
+            final int index = Integer.parseInt(name.substring(name.lastIndexOf('T') + 1));
+            final int tweakers = Integer.getInteger("modpack.tweakers");
+            if (index + 1 < tweakers) {
+                ((List<String>) Launch.blackboard.get("TweakClasses"))
+                        .add(name.substring(0, name.lastIndexOf('T') + 1) + (index + 1));
+            }
+
+            final String transformer;
+            switch (System.getProperty("modpack.cost")) {
+                case "noop":
+                    transformer = BenchmarkTransformers.NoOp.class.getName();
+                    break;
+                case "node":
+                    transformer = BenchmarkTransformers.Node.class.getName();
+                    break;
+                default:
+                    transformer = BenchmarkTransformers.Asm.class.getName();
+            }
+            final int transformers = Integer.getInteger("modpack.transformers");
+            for (int i = index; i < transformers; i += tweakers) {
+                classLoader.registerTransformer(transformer);
+            }
+        }
+
+        @Override
+        public String getLaunchTarget() {
+            return Target.class.getName();
+        }
+
+        @Override
+        public String[] getLaunchArguments() {
+            return new String[0];
+        }
+    }
+
+    /** Dummy game: initializes every mod class through the LaunchClassLoader and reports the cost of the launch. */
+    public static final class Target {
+        public static void main(String[] args) throws ClassNotFoundException {
+            final int jars = Integer.getInteger("modpack.jars");
+            final int classes = Integer.getInteger("modpack.classes");
+            final long start = System.nanoTime();
+            for (int j = 0; j < jars; j++) {
+                for (int i = 0; i < classes; i++) {
+                    Class.forName("bench.p" + j + ".C" + i, true, Launch.classLoader);
+                }
+            }
+            final long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            long allocated = -1;
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                // threads that already exited are not counted, so this is a lower bound
+                allocated = 0;
+                for (long id : threads.getAllThreadIds()) {
+                    allocated += Math.max(0, ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(id));
+                }
+            }
+            System.out.printf(
+                    "%s startupMillis=%d loadMillis=%d classes=%d peakHeapBytes=%d allocatedBytes=%d%n",
+                    RESULT,
+                    ManagementFactory.getRuntimeMXBean().getUptime(),
+                    loadMillis,
+                    (long) jars * classes,
+                    peakHeap,
+                    allocated);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.minecraft.launchwrapper;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress test for the parallel capable LaunchClassLoader. Many threads load thousands of synthetic classes at once, each
+ * in its own shuffled order and mixed with lookups of missing classes and exclusion changes. It fails unless every
+ * class is defined once, every thread sees the same Class object, and every class went through the transformer chain
+ * exactly once.
+ *
+ * <pre>
+ * ./gradlew parallelLoadStress -PstressArgs="--threads 32 --jars 20 --classes 500 --rounds 3"
+ * </pre>
+ */
+public final class ParallelLoadStress {
+    private ParallelLoadStress() {}
+
+    /** Counts how often each class is transformed. Loaded by the parent, so all loaders share the counts. */
+    public static final class CountingTransformer implements IClassTransformer {
+        static final Map<String, AtomicInteger> COUNTS = new ConcurrentHashMap<>();
+
+        @Override
+        public byte[] transform(String name, String transformedName, byte[] basicClass) {
+            if (basicClass != null) {
+                COUNTS.computeIfAbsent(transformedName, k -> new AtomicInteger()).incrementAndGet();
+            }
+            return basicClass;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        options.put("threads", "16");
+        options.put("jars", "8");
+        options.put("classes", "500");
+        options.put("rounds", "3");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException(
+                        "Unknown option " + args[i] + ", expected one of " + options.keySet());
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        final int threads = Integer.parseInt(options.get("threads"));
+        final int rounds = Integer.parseInt(options.get("rounds"));
+
+        final List<String> failures = new ArrayList<>();
+        try (SyntheticClasspath classpath = new SyntheticClasspath(
+                Integer.parseInt(options.get("jars")), Integer.parseInt(options.get("classes")))) {
+            for (int round = 0; round < rounds; round++) {
+                failures.addAll(runRound(classpath, threads, round));
+            }
+            System.out.printf(
+                    "Loaded %d classes on %d threads over %d rounds%n", classpath.classNames.size(), threads, rounds);
+        }
+        if (!failures.isEmpty()) {
+            failures.stream().limit(20).forEach(System.err::println);
+            System.err.printf("%d failures%n", failures.size());
+            System.exit(1);
+        }
+    }
+
+    private static List<String> runRound(SyntheticClasspath classpath, int threads, int round) throws Exception {
+        CountingTransformer.COUNTS.clear();
+        final List<String> failures = new CopyOnWriteArrayList<>();
+        final Map<String, Class<?>> seen = new ConcurrentHashMap<>();
+        final LaunchClassLoader loader = classpath.newLoader();
+        loader.registerTransformer(CountingTransformer.class.getName());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    final List<String> names = new ArrayList<>(classpath.classNames);
+                    Collections.shuffle(names, new Random(round * 1000L + thread));
+                    start.await();
+                    for (int i = 0; i < names.size(); i++) {
+                        final String name = names.get(i);
+                        try {
+                            final Class<?> clazz = Class.forName(name, false, loader);
+                            final Class<?> previous = seen.putIfAbsent(name, clazz);
+                            if (previous != null && previous != clazz) {
+                                failures.add(name + " was defined twice");
+                            }
+                        } catch (Throwable e) {
+                            failures.add(name + " failed to load: " + e);
+                        }
+                        if (i % 50 == thread % 50) {
+                            try {
+                                Class.forName("bench.missing.M" + (i % 20), false, loader);
+                                failures.add("bench.missing.M" + (i % 20) + " was found");
+                            } catch (ClassNotFoundException expected) {
+                            }
+                        }
+                        if (i % 200 == 0) {
+                            // exclusions change while other threads are loading
+                            loader.addTransformerExclusion("bench.excluded" + thread + ".");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+            loader.close();
+        }
+
+        for (String name : classpath.classNames) {
+            final AtomicInteger count = CountingTransformer.COUNTS.get(name);
+            if (count == null || count.get() != 1) {
+                failures.add(name + " was transformed " + (count == null ? 0 : count.get()) + " times");
+            }
+        }
+        return failures;
+    }
+}
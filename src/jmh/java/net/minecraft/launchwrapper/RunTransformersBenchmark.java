@@ -0,0 +1,54 @@
+package net.minecraft.launchwrapper;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of LaunchClassLoader.runTransformers for one class with 0, 1 and 8 registered transformers of each kind. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RunTransformersBenchmark {
+    @Param({"0", "1", "8"})
+    public int transformers;
+
+    @Param({"noop", "asm", "node"})
+    public String kind;
+
+    private LaunchClassLoader loader;
+    private byte[] basicClass;
+
+    @Setup
+    public void setUp() {
+        loader = new LaunchClassLoader(new URL[0]);
+        final String transformer;
+        switch (kind) {
+            case "asm":
+                transformer = BenchmarkTransformers.Asm.class.getName();
+                break;
+            case "node":
+                transformer = BenchmarkTransformers.Node.class.getName();
+                break;
+            default:
+                transformer = BenchmarkTransformers.NoOp.class.getName();
+        }
+        for (int i = 0; i < transformers; i++) {
+            loader.registerTransformer(transformer);
+        }
+        basicClass = SyntheticClasspath.generate("bench/p0/C0");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loader.close();
+    }
+
+    @Benchmark
+    public byte[] runTransformers() {
+        return loader.runTransformers("bench.p0.C0", "bench.p0.C0", basicClass);
+    }
+}
@@ -0,0 +1,91 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A generated set of jars standing in for a modded classpath. Jar {@code j} holds the classes {@code bench.p<j>.C<i>},
+ * each with a handful of fields and methods so that parsing and writing them costs about as much as a small mod class.
+ */
+final class SyntheticClasspath implements Closeable {
+    final File directory;
+    final URL[] urls;
+    final List<String> classNames = new ArrayList<>();
+
+    SyntheticClasspath(int jars, int classesPerJar) throws IOException {
+        directory = Files.createTempDirectory("launchwrapper-jmh").toFile();
+        urls = new URL[jars];
+        for (int j = 0; j < jars; j++) {
+            final File jar = new File(directory, "mod" + j + ".jar");
+            final Manifest manifest = new Manifest();
+            manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+                for (int i = 0; i < classesPerJar; i++) {
+                    final String internalName = "bench/p" + j + "/C" + i;
+                    out.putNextEntry(new JarEntry(internalName + ".class"));
+                    out.write(generate(internalName));
+                    out.closeEntry();
+                    classNames.add(internalName.replace('/', '.'));
+                }
+            }
+            urls[j] = jar.toURI().toURL();
+        }
+    }
+
+    LaunchClassLoader newLoader() {
+        return new LaunchClassLoader(urls);
+    }
+
+    static byte[] generate(String internalName) {
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        writer.visit(
+                Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        for (int f = 0; f < 4; f++) {
+            writer.visitField(Opcodes.ACC_PRIVATE, "field" + f, "I", null, null).visitEnd();
+        }
+
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        method.visitCode();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        for (int m = 0; m < 4; m++) {
+            method = writer.visitMethod(Opcodes.ACC_PUBLIC, "sum" + m, "(I)I", null, null);
+            method.visitCode();
+            method.visitVarInsn(Opcodes.ILOAD, 1);
+            for (int f = 0; f < 4; f++) {
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitFieldInsn(Opcodes.GETFIELD, internalName, "field" + f, "I");
+                method.visitInsn(Opcodes.IADD);
+            }
+            method.visitInsn(Opcodes.IRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
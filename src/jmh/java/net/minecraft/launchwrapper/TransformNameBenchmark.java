@@ -0,0 +1,50 @@
+package net.minecraft.launchwrapper;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of LaunchClassLoader.transformName without a rename transformer, with one holding a large mapping, and with one
+ * publishing that mapping through IClassNameMappings so the loader memoizes it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformNameBenchmark {
+    @Param({"none", "direct", "mappings"})
+    public String renamer;
+
+    private LaunchClassLoader loader;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        loader = new LaunchClassLoader(new URL[0]);
+        if (renamer.equals("direct")) {
+            loader.registerTransformer(BenchmarkTransformers.Renamer.class.getName());
+        } else if (renamer.equals("mappings")) {
+            loader.registerTransformer(BenchmarkTransformers.MappedRenamer.class.getName());
+        }
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++) {
+            // half of the names are mapped, the rest pass through unchanged
+            names[i] = i % 2 == 0 ? "bench.obf.a" + i : "com.example.mod.Class" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loader.close();
+    }
+
+    @Benchmark
+    public String transformName() {
+        return loader.transformName(names[next++ & (names.length - 1)]);
+    }
+}
@@ -0,0 +1,108 @@
+package net.minecraft.launchwrapper;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe set of names that forgets its oldest entries beyond a fixed size. Used for LaunchClassLoader's negative
+ * caches, where forgetting a name only costs one repeated lookup, so a long-running server that keeps probing for
+ * optional classes cannot grow them without bound. Lookups stay exact: a name is never reported present unless it was
+ * added.
+ */
+final class BoundedNameSet extends AbstractSet<String> {
+    static final int DEFAULT_LIMIT = Integer.getInteger("legacy.negativeCacheLimit", 16384);
+
+    /** Name to its entry in the eviction order; an entry no longer mapped here is stale and skipped. */
+    private final Map<String, Entry> names = new ConcurrentHashMap<>();
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int limit;
+
+    BoundedNameSet(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean add(String name) {
+        final Entry entry = new Entry(name);
+        if (names.putIfAbsent(name, entry) != null) {
+            return false;
+        }
+        order.add(entry);
+        if (queued.incrementAndGet() > 2 * limit) {
+            purgeStaleEntries();
+        }
+        while (names.size() > limit) {
+            final Entry eldest = order.poll();
+            if (eldest == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            names.remove(eldest.name, eldest);
+        }
+        return true;
+    }
+
+    /** Removes the name in constant time, leaving its queue entry to be skipped on eviction. */
+    @Override
+    public boolean remove(Object name) {
+        return names.remove(name) != null;
+    }
+
+    /** Always walks the given names, since AbstractSet may instead call contains on them for each of its own. */
+    @Override
+    public boolean removeAll(Collection<?> toRemove) {
+        boolean changed = false;
+        for (Object name : toRemove) {
+            changed |= remove(name);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(Object name) {
+        return names.containsKey(name);
+    }
+
+    @Override
+    public void clear() {
+        names.clear();
+        order.clear();
+        queued.set(0);
+    }
+
+    @Override
+    public int size() {
+        return names.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return names.keySet().iterator();
+    }
+
+    /** Drops the entries of removed names, so removals without evictions cannot grow the queue without bound. */
+    private void purgeStaleEntries() {
+        for (Iterator<Entry> iterator = order.iterator(); iterator.hasNext(); ) {
+            final Entry entry = iterator.next();
+            if (names.get(entry.name) != entry) {
+                iterator.remove();
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+}
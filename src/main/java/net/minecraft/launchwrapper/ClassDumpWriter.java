@@ -0,0 +1,209 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.logging.log4j.Level;
+
+/**
+ * Background writer for the class dumps of {@code legacy.debugClassLoadingSave}. Dumps are queued and written by one
+ * daemon thread, into {@code classes.zip} in the dump directory or, with {@code legacy.debugClassLoadingSaveArchive}
+ * set to false, as one file per class. A queue that is full makes the loading thread wait rather than drop dumps.
+ * Dumps are deduplicated by content: one with the same bytes as a dump already saved, under any name, is not written
+ * again, and {@code duplicates.txt} lists it along with the name its bytes were saved under. A different dump under a
+ * used name is stored with a numbered suffix, so that nothing already saved or listed is replaced.
+ */
+final class ClassDumpWriter implements Closeable {
+    static final boolean ARCHIVE =
+            Boolean.parseBoolean(System.getProperty("legacy.debugClassLoadingSaveArchive", "true"));
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final Dump END = new Dump(null, null);
+    private static final String DUPLICATES = "duplicates.txt";
+
+    private final File directory;
+    private final BlockingQueue<Dump> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    // only touched by the writer thread
+    /** SHA-1 of the bytes saved so far to where they were saved. */
+    private final Map<ByteBuffer, Saved> savedByContent = new HashMap<>();
+    private final Set<String> savedPaths = new HashSet<>();
+    private final List<String> duplicates = new ArrayList<>();
+    private ZipOutputStream archive;
+    private volatile boolean closed;
+
+    ClassDumpWriter(File directory) {
+        this.directory = directory;
+        this.thread = new Thread(this::drain, "LaunchWrapper class dump writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "LaunchWrapper class dump flush"));
+    }
+
+    /**
+     * Cheap content checksum standing in for a cryptographic hash: the CRC-32 of the bytes in the high half and their
+     * length in the low half.
+     */
+    static long checksum(byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue() << 32 | (data.length & 0xFFFFFFFFL);
+    }
+
+    /** Queues a copy of the class bytes to be saved as {@code <name>.class}, waiting if the queue is full. */
+    void save(String name, byte[] data) {
+        if (closed) {
+            return;
+        }
+        final Dump dump = new Dump(name.replace('.', '/') + ".class", data.clone());
+        try {
+            // stop waiting once closed, the writer no longer drains the queue
+            while (!queue.offer(dump, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writes out every queued dump and finishes the archive. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            for (Dump dump = queue.take(); dump != END; dump = queue.take()) {
+                try {
+                    write(dump);
+                } catch (IOException e) {
+                    LogWrapper.log(Level.WARN, e, "Could not save transformed class \"" + dump.path + "\"");
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            try {
+                writeDuplicates();
+            } catch (IOException e) {
+                LogWrapper.log(Level.WARN, e, "Could not save the list of duplicate class dumps");
+            }
+            if (archive != null) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    LogWrapper.log(Level.WARN, e, "Could not finish the class dump archive");
+                }
+            }
+        }
+    }
+
+    private void write(Dump dump) throws IOException {
+        final ByteBuffer content = ByteBuffer.wrap(TransformedClassCache.hash(dump.data));
+        final Saved same = savedByContent.get(content);
+        if (same != null && same.matches(dump.data)) {
+            if (!same.path.equals(dump.path)) {
+                duplicates.add(dump.path + " = " + same.path);
+            }
+            return;
+        }
+
+        String path = dump.path;
+        final String base = path.substring(0, path.length() - ".class".length());
+        for (int copy = 2; !savedPaths.add(path); copy++) {
+            path = base + "_dup" + copy + ".class";
+        }
+        savedByContent.put(content, new Saved(path, dump.data));
+
+        if (ARCHIVE) {
+            openArchive().putNextEntry(new ZipEntry(path));
+            archive.write(dump.data);
+            archive.closeEntry();
+            return;
+        }
+
+        final File outFile = new File(directory, path.replace('/', File.separatorChar));
+        outFile.getParentFile().mkdirs();
+        LogWrapper.fine(
+                "Saving transformed class \"{}\" to \"{}\"", path, outFile.getAbsolutePath().replace('\\', '/'));
+        try (OutputStream output = new FileOutputStream(outFile)) {
+            output.write(dump.data);
+        }
+    }
+
+    private ZipOutputStream openArchive() throws IOException {
+        if (archive == null) {
+            final File file = new File(directory, "classes.zip");
+            archive = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+            archive.setLevel(Deflater.BEST_SPEED);
+            LogWrapper.fine("Saving transformed classes to \"{}\"", file.getAbsolutePath().replace('\\', '/'));
+        }
+        return archive;
+    }
+
+    private void writeDuplicates() throws IOException {
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        final StringBuilder list = new StringBuilder();
+        for (String duplicate : duplicates) {
+            list.append(duplicate).append('\n');
+        }
+        final byte[] bytes = list.toString().getBytes(StandardCharsets.UTF_8);
+        if (ARCHIVE) {
+            openArchive().putNextEntry(new ZipEntry(DUPLICATES));
+            archive.write(bytes);
+            archive.closeEntry();
+        } else {
+            try (OutputStream output = new FileOutputStream(new File(directory, DUPLICATES))) {
+                output.write(bytes);
+            }
+        }
+    }
+
+    private static final class Dump {
+        final String path;
+        final byte[] data;
+
+        Dump(String path, byte[] data) {
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    /** Where some bytes were saved. The bytes are kept softly, to rule out a hash collision without pinning them. */
+    private static final class Saved {
+        final String path;
+        private final SoftReference<byte[]> data;
+
+        Saved(String path, byte[] data) {
+            this.path = path;
+            this.data = new SoftReference<>(data);
+        }
+
+        /** Returns false if the bytes differ, or were reclaimed and cannot be compared, so the dump is saved again. */
+        boolean matches(byte[] other) {
+            final byte[] bytes = data.get();
+            return bytes != null && Arrays.equals(bytes, other);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package net.minecraft.launchwrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The header of a class file: its name, superclass, interfaces, access flags and class-level annotation types. Parsing
+ * reads the constant pool and the header only; fields, methods and attributes are skipped by their lengths, and
+ * annotations are only looked at when asked for. This is meant for transformers that reject most classes, so they do
+ * not need a ClassReader or a ClassNode for the classes they leave alone.
+ *
+ * <p>{@link LaunchClassLoader} memoizes the header of the class it is transforming, so every transformer calling
+ * {@link #of(byte[])} with the bytes it was given shares one parse. All names are internal names, e.g.
+ * {@code java/lang/Runnable}, and annotation types are descriptors, e.g. {@code Lcom/example/Marker;}.
+ */
+public final class ClassHeader {
+    private static final String[] NO_NAMES = new String[0];
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private final byte[] bytes;
+    private final int[] constantPool;
+    private final int headerOffset;
+    private final int access;
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private List<String> annotations;
+
+    private ClassHeader(byte[] bytes) {
+        this.bytes = bytes;
+        if (readInt(0) != 0xCAFEBABE) {
+            throw new IllegalArgumentException("Not a class file");
+        }
+        constantPool = new int[readUnsignedShort(8)];
+        int offset = 10;
+        for (int i = 1; i < constantPool.length; i++) {
+            constantPool[i] = offset + 1;
+            switch (bytes[offset]) {
+                case 1: // Utf8
+                    offset += 3 + readUnsignedShort(offset + 1);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    offset += 9;
+                    i++;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    offset += 5;
+                    break;
+                case 15: // MethodHandle
+                    offset += 4;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    offset += 3;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + bytes[offset]);
+            }
+        }
+        access = readUnsignedShort(offset);
+        name = readClass(offset + 2);
+        superName = readClass(offset + 4);
+        final int interfaceCount = readUnsignedShort(offset + 6);
+        interfaces = interfaceCount == 0 ? NO_NAMES : new String[interfaceCount];
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces[i] = readClass(offset + 8 + 2 * i);
+        }
+        headerOffset = offset + 8 + 2 * interfaceCount;
+    }
+
+    /**
+     * Returns the header of the given class bytes. The header of the class LaunchClassLoader is transforming on this
+     * thread is parsed once and shared, as long as the same array is passed; other bytes are parsed on every call.
+     *
+     * @throws IllegalArgumentException if the bytes are not a valid class file
+     */
+    public static ClassHeader of(byte[] bytes) {
+        final Scope scope = CURRENT.get();
+        if (scope != null && scope.bytes == bytes) {
+            if (scope.header == null) {
+                scope.header = parse(bytes);
+            }
+            return scope.header;
+        }
+        return parse(bytes);
+    }
+
+    /** Parses the header of the given class bytes without any memoization. */
+    public static ClassHeader parse(byte[] bytes) {
+        try {
+            return new ClassHeader(bytes);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated class file", e);
+        }
+    }
+
+    /**
+     * Makes {@link #of(byte[])} share one parse of the given bytes on this thread until {@link #exit(Object)}. Parsing
+     * is deferred to the first call. Returns the previous scope, since transforming a class can load another one.
+     */
+    static Object enter(byte[] bytes) {
+        final Scope previous = CURRENT.get();
+        CURRENT.set(new Scope(bytes));
+        return previous;
+    }
+
+    static void exit(Object previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set((Scope) previous);
+        }
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public boolean isInterface() {
+        return (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** The superclass, or null for {@code java/lang/Object} and module descriptors. */
+    public String getSuperName() {
+        return superName;
+    }
+
+    public String[] getInterfaces() {
+        return interfaces.length == 0 ? interfaces : interfaces.clone();
+    }
+
+    public boolean hasInterface(String interfaceName) {
+        for (String anInterface : interfaces) {
+            if (anInterface.equals(interfaceName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Descriptors of the visible and invisible annotations on the class itself, read on first use. */
+    public List<String> getAnnotations() {
+        List<String> result = annotations;
+        if (result == null) {
+            try {
+                annotations = result = readAnnotations();
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Truncated class file", e);
+            }
+        }
+        return result;
+    }
+
+    public boolean hasAnnotation(String descriptor) {
+        return getAnnotations().contains(descriptor);
+    }
+
+    private List<String> readAnnotations() {
+        int offset = skipMembers(headerOffset);
+        offset = skipMembers(offset);
+        List<String> found = Collections.emptyList();
+        final int count = readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            final String attribute = readUtf(readUnsignedShort(offset));
+            final int length = readInt(offset + 2);
+            if ("RuntimeVisibleAnnotations".equals(attribute) || "RuntimeInvisibleAnnotations".equals(attribute)) {
+                int annotation = offset + 8;
+                for (int j = readUnsignedShort(offset + 6); j > 0; j--) {
+                    if (found.isEmpty()) {
+                        found = new ArrayList<>();
+                    }
+                    found.add(readUtf(readUnsignedShort(annotation)));
+                    annotation = skipAnnotation(annotation);
+                }
+            }
+            offset += 6 + length;
+        }
+        return found.isEmpty() ? found : Collections.unmodifiableList(found);
+    }
+
+    /** Skips a fields or methods table, returning the offset just after it. */
+    private int skipMembers(int offset) {
+        final int count = readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            final int attributes = readUnsignedShort(offset + 6);
+            offset += 8;
+            for (int j = 0; j < attributes; j++) {
+                offset += 6 + readInt(offset + 2);
+            }
+        }
+        return offset;
+    }
+
+    private int skipAnnotation(int offset) {
+        final int pairs = readUnsignedShort(offset + 2);
+        offset += 4;
+        for (int i = 0; i < pairs; i++) {
+            offset = skipElementValue(offset + 2);
+        }
+        return offset;
+    }
+
+    private int skipElementValue(int offset) {
+        switch (bytes[offset]) {
+            case 'e':
+                return offset + 5;
+            case '@':
+                return skipAnnotation(offset + 1);
+            case '[':
+                final int values = readUnsignedShort(offset + 1);
+                offset += 3;
+                for (int i = 0; i < values; i++) {
+                    offset = skipElementValue(offset);
+                }
+                return offset;
+            default:
+                return offset + 3;
+        }
+    }
+
+    private String readClass(int offset) {
+        final int index = readUnsignedShort(offset);
+        return index == 0 ? null : readUtf(readUnsignedShort(constantPool[index]));
+    }
+
+    /** Decodes a modified UTF-8 constant. */
+    private String readUtf(int index) {
+        final int offset = constantPool[index];
+        final int length = readUnsignedShort(offset);
+        final char[] chars = new char[length];
+        int count = 0;
+        for (int i = offset + 2, end = offset + 2 + length; i < end; ) {
+            final int b = bytes[i++];
+            if ((b & 0x80) == 0) {
+                chars[count++] = (char) (b & 0x7F);
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) + (bytes[i++] & 0x3F));
+            } else {
+                chars[count++] = (char) (((b & 0xF) << 12) + ((bytes[i++] & 0x3F) << 6) + (bytes[i++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int readUnsignedShort(int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private int readInt(int offset) {
+        return ((bytes[offset] & 0xFF) << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static final class Scope {
+        final byte[] bytes;
+        ClassHeader header;
+
+        Scope(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.minecraft.launchwrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Answers type hierarchy questions for a {@link LaunchClassLoader} from class bytes, without loading or defining
+ * classes. Classes the loader already defined are described from their Class object; others are read through
+ * {@link LaunchClassLoader#getClassBytes(String)}, with their supertypes renamed by the rename transformer, or from the
+ * system class path, which is also where {@code java/} classes are looked up, without consulting the loader. Supertype
+ * changes made by other transformers are not seen until the class is defined. Classes that cannot be found are not
+ * remembered, so they are looked up again once the classpath has changed. All names are internal names in the
+ * transformed (runtime) namespace, e.g. {@code java/lang/Object}.
+ *
+ * @see LaunchClassWriter
+ */
+public final class ClassHierarchy {
+    private static final String OBJECT = "java/lang/Object";
+    private static final String[] NO_INTERFACES = new String[0];
+
+    private final LaunchClassLoader classLoader;
+    private final Map<String, ClassInfo> infos = new ConcurrentHashMap<>();
+
+    ClassHierarchy(LaunchClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /** Returns true if the class is known, either to the loader or on the system class path. */
+    public boolean exists(String type) {
+        return info(type) != null;
+    }
+
+    /** The internal name of the superclass, or null for {@code java/lang/Object} and unknown classes. */
+    public String getSuperName(String type) {
+        final ClassInfo info = info(type);
+        return info != null ? info.superName : null;
+    }
+
+    /** The internal names of the directly implemented interfaces, empty for unknown classes. */
+    public String[] getInterfaces(String type) {
+        final ClassInfo info = info(type);
+        return info != null ? info.interfaces.clone() : NO_INTERFACES;
+    }
+
+    public boolean isInterface(String type) {
+        final ClassInfo info = info(type);
+        return info != null && info.isInterface();
+    }
+
+    /**
+     * Returns true if a value of type {@code other} can be assigned to a variable of type {@code type}.
+     *
+     * @throws TypeNotPresentException if the answer depends on a class that cannot be found
+     */
+    public boolean isAssignableFrom(String type, String other) {
+        if (type.equals(other) || OBJECT.equals(type)) {
+            return true;
+        }
+        final ClassInfo info = require(other);
+        if (info.superName != null && isAssignableFrom(type, info.superName)) {
+            return true;
+        }
+        for (String anInterface : info.interfaces) {
+            if (isAssignableFrom(type, anInterface)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The closest common superclass of two types, with the semantics of {@code ClassWriter#getCommonSuperClass}.
+     *
+     * @throws TypeNotPresentException if the answer depends on a class that cannot be found, as a guessed answer would
+     *     only surface later as a VerifyError
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (require(type1).isInterface() || require(type2).isInterface()) {
+            return OBJECT;
+        }
+        String type = type1;
+        do {
+            type = require(type).superName;
+        } while (type != null && !isAssignableFrom(type, type2));
+        return type != null ? type : OBJECT;
+    }
+
+    /** Forgets every cached class description. */
+    public void clear() {
+        infos.clear();
+    }
+
+    private ClassInfo require(String type) {
+        final ClassInfo info = info(type);
+        if (info == null) {
+            throw new TypeNotPresentException(type.replace('/', '.'), null);
+        }
+        return info;
+    }
+
+    /** Returns the description of the class, or null if it cannot be found. */
+    private ClassInfo info(String type) {
+        ClassInfo info = infos.get(type);
+        if (info == null) {
+            info = load(type);
+            if (info != null) {
+                final ClassInfo existing = infos.putIfAbsent(type, info);
+                if (existing != null) {
+                    info = existing;
+                }
+            }
+        }
+        return info;
+    }
+
+    private ClassInfo load(String type) {
+        final String name = type.replace('/', '.');
+        final Class<?> loaded = classLoader.getCachedClass(name);
+        if (loaded != null) {
+            final Class<?>[] interfaces = loaded.getInterfaces();
+            final String[] interfaceNames = new String[interfaces.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaceNames[i] = Type.getInternalName(interfaces[i]);
+            }
+            final Class<?> superclass = loaded.getSuperclass();
+            final int access = loaded.isInterface() ? Opcodes.ACC_INTERFACE : 0;
+            return new ClassInfo(
+                    superclass != null ? Type.getInternalName(superclass) : null, interfaceNames, access);
+        }
+
+        if (type.startsWith("java/")) {
+            // never defined by the loader, so looking for them there would only fill its negative cache
+            return loadSystem(type);
+        }
+        try {
+            final byte[] bytes = classLoader.getClassBytes(classLoader.untransformName(name));
+            if (bytes != null) {
+                final ClassReader reader = new ClassReader(bytes);
+                final String[] interfaces = reader.getInterfaces();
+                for (int i = 0; i < interfaces.length; i++) {
+                    interfaces[i] = remap(interfaces[i]);
+                }
+                final String superName = reader.getSuperName();
+                return new ClassInfo(superName != null ? remap(superName) : null, interfaces, reader.getAccess());
+            }
+        } catch (IOException | RuntimeException e) {
+            LogWrapper.fine("Could not read the hierarchy of {}: {}", name, e);
+        }
+        return loadSystem(type);
+    }
+
+    private static ClassInfo loadSystem(String type) {
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(type + ".class")) {
+            if (in != null) {
+                final ClassReader reader = new ClassReader(in);
+                return new ClassInfo(reader.getSuperName(), reader.getInterfaces(), reader.getAccess());
+            }
+        } catch (IOException | RuntimeException e) {
+            LogWrapper.fine("Could not read the hierarchy of {}: {}", type, e);
+        }
+        return null;
+    }
+
+    private String remap(String type) {
+        return classLoader.transformName(type.replace('/', '.')).replace('.', '/');
+    }
+
+    private static final class ClassInfo {
+        final String superName;
+        final String[] interfaces;
+        final int access;
+
+        ClassInfo(String superName, String[] interfaces, int access) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.access = access;
+        }
+
+        boolean isInterface() {
+            return (access & Opcodes.ACC_INTERFACE) != 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.minecraft.launchwrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memo table for one {@link IClassNameTransformer}, in both directions. It is used for transformers implementing
+ * {@link IClassNameMappings}, or for every rename transformer when {@code legacy.classNameCache} is set. Transformers
+ * that keep changing their mapping after registration must not be memoized, so that property is off by default.
+ */
+final class ClassNameCache {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("legacy.classNameCache", "false"));
+    private static final int LIMIT = Integer.getInteger("legacy.classNameCacheLimit", 1 << 17);
+
+    final IClassNameTransformer renamer;
+    private final Map<String, String> remapped = new ConcurrentHashMap<>();
+    private final Map<String, String> unmapped = new ConcurrentHashMap<>();
+
+    ClassNameCache(IClassNameTransformer renamer) {
+        this.renamer = renamer;
+        if (renamer instanceof IClassNameMappings) {
+            final Map<String, String> mappings = ((IClassNameMappings) renamer).getClassNameMappings();
+            if (mappings != null) {
+                for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+                    remapped.put(mapping.getKey(), mapping.getValue());
+                    unmapped.put(mapping.getValue(), mapping.getKey());
+                }
+                LogWrapper.fine(
+                        "Preloaded {} class name mappings from {}", mappings.size(), renamer.getClass().getName());
+            }
+        }
+    }
+
+    static boolean isEnabledFor(IClassNameTransformer renamer) {
+        return ENABLED || renamer instanceof IClassNameMappings;
+    }
+
+    String remap(String name) {
+        final String cached = remapped.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        final String result = renamer.remapClassName(name);
+        if (result != null && remapped.size() < LIMIT) {
+            remapped.put(name, result);
+        }
+        return result;
+    }
+
+    String unmap(String name) {
+        final String cached = unmapped.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        final String result = renamer.unmapClassName(name);
+        if (result != null && unmapped.size() < LIMIT) {
+            unmapped.put(name, result);
+        }
+        return result;
+    }
+}
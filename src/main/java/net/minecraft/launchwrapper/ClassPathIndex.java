@@ -0,0 +1,541 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipFile;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.Level;
+
+/**
+ * Loader-owned index of the classpath. Each jar's central directory is read once when it is added, and every directory
+ * of entries it contains is mapped to the jars providing it, in classpath order. A lookup only probes the jars that
+ * actually contain the entry's directory instead of walking every URL like URLClassLoader does. Jars named by a
+ * manifest {@code Class-Path} are indexed right after the jar naming them, which is where URLClassLoader searches them.
+ */
+final class ClassPathIndex implements Closeable {
+    private static final Source[] NO_SOURCES = new Source[0];
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final List<Source> sources = new CopyOnWriteArrayList<>();
+    private final List<Source> directories = new CopyOnWriteArrayList<>();
+    private final Map<String, Source[]> packages = new ConcurrentHashMap<>();
+    private volatile boolean complete = true;
+    private volatile boolean signatureCache;
+    /** External forms of the URLs added so far, since URLClassLoader ignores a URL it already has. */
+    private final Set<String> added = new HashSet<>();
+
+    synchronized void add(URL url) {
+        if (!added.add(url.toExternalForm())) {
+            return;
+        }
+        final Source source = Source.open(url, sources.size());
+        if (source == null) {
+            complete = false;
+            return;
+        }
+        if (source.directory != null) {
+            source.mode = Mode.of(source);
+            sources.add(source);
+            directories.add(source);
+            return;
+        }
+        if (source.jarFile == null) {
+            sources.add(source);
+            return;
+        }
+
+        final Set<String> jarPackages = new HashSet<>();
+        final Enumeration<JarEntry> entries = source.jarFile.entries();
+        while (entries.hasMoreElements()) {
+            final String name = entries.nextElement().getName();
+            jarPackages.add(packageOf(name));
+            if (name.startsWith(VERSIONS)) {
+                // a multi-release jar may have classes that only exist for some Java versions
+                final int versionEnd = name.indexOf('/', VERSIONS.length());
+                if (versionEnd != -1) {
+                    jarPackages.add(packageOf(name.substring(versionEnd + 1)));
+                }
+            }
+            if (isSignatureFile(name)) {
+                source.signed = true;
+            }
+        }
+        if (source.signed && signatureCache) {
+            source.useCachedSigners();
+        }
+        source.mode = Mode.of(source);
+        sources.add(source);
+        for (String jarPackage : jarPackages) {
+            final Source[] existing = packages.getOrDefault(jarPackage, NO_SOURCES);
+            final Source[] updated = Arrays.copyOf(existing, existing.length + 1);
+            updated[existing.length] = source;
+            packages.put(jarPackage, updated);
+        }
+        addManifestClassPath(source);
+    }
+
+    private void addManifestClassPath(Source source) {
+        final String classPath;
+        try {
+            final Manifest manifest = source.getManifest();
+            classPath = manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+        } catch (IOException e) {
+            LogWrapper.fine("Could not read the manifest of {}: {}", source.url, e);
+            return;
+        }
+        if (classPath == null) {
+            return;
+        }
+        for (String path : classPath.trim().split("\\s+")) {
+            if (path.isEmpty()) {
+                continue;
+            }
+            try {
+                add(new URL(source.url, path));
+            } catch (MalformedURLException e) {
+                LogWrapper.fine("Ignoring Class-Path entry {} of {}: {}", path, source.url, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the first classpath resource with the given entry name, or null if no indexed source contains it. A null
+     * result is only authoritative when {@link #isComplete()} is true.
+     */
+    Resource find(String name) {
+        Source jar = null;
+        JarEntry entry = null;
+        for (Source source : packages.getOrDefault(packageOf(name), NO_SOURCES)) {
+            entry = source.jarFile.getJarEntry(name);
+            if (entry != null) {
+                jar = source;
+                break;
+            }
+        }
+
+        if (!directories.isEmpty()) {
+            final int limit = jar == null ? Integer.MAX_VALUE : jar.order;
+            for (Source directory : directories) {
+                if (directory.order > limit) {
+                    break;
+                }
+                final File file = new File(directory.directory, name);
+                if (file.isFile()) {
+                    return new Resource(directory, name, null, file);
+                }
+            }
+        }
+
+        return jar == null ? null : new Resource(jar, name, entry, null);
+    }
+
+    /**
+     * Lists the entry names of the classes in every indexed source, in classpath order and without duplicates. Walks
+     * every jar and directory, so it is only meant for whole-classpath tools.
+     */
+    synchronized Set<String> classEntries() throws IOException {
+        final Set<String> names = new LinkedHashSet<>();
+        for (Source source : sources) {
+            if (source.jarFile != null) {
+                final Enumeration<JarEntry> entries = source.jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    addClassEntry(names, entries.nextElement().getName());
+                }
+            } else if (source.directory != null && source.directory.isDirectory()) {
+                final Path root = source.directory.toPath();
+                try (Stream<Path> files = Files.walk(root)) {
+                    files.filter(Files::isRegularFile).forEach(file -> addClassEntry(
+                            names, root.relativize(file).toString().replace(File.separatorChar, '/')));
+                }
+            }
+        }
+        return names;
+    }
+
+    private static void addClassEntry(Set<String> names, String name) {
+        if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+            names.add(name);
+        }
+    }
+
+    /**
+     * Takes the signers of signed jars from the {@link SignatureCache} from now on, for the jars indexed so far and the
+     * ones added later. Called once the cache directory is known, which is after the loader has been constructed.
+     */
+    synchronized void useSignatureCache() {
+        if (!SignatureCache.ENABLED || signatureCache) {
+            return;
+        }
+        signatureCache = true;
+        for (Source source : sources) {
+            if (source.signed) {
+                source.useCachedSigners();
+            }
+        }
+    }
+
+    /**
+     * Returns how the class with the given entry name is loaded, from the mode of the source providing it; classes not
+     * found in the index are transformed as usual.
+     */
+    Mode modeOf(String name) {
+        final Resource resource = find(name);
+        return resource != null ? resource.source.mode : Mode.TRANSFORMED;
+    }
+
+    /** Returns false if some classpath URL could not be indexed and lookups must fall back to URLClassLoader. */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns true if every lookup is answered from memory, so a missing entry costs no more to look up again than to
+     * remember. That is the case when the classpath is complete and made of jars only.
+     */
+    boolean isInMemory() {
+        return complete && directories.isEmpty();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Source source : sources) {
+            closeSilently(source.jarFile);
+            closeSilently(source.verifiedJarFile);
+        }
+        sources.clear();
+        directories.clear();
+        packages.clear();
+    }
+
+    private static void closeSilently(JarFile jarFile) {
+        if (jarFile != null) {
+            try {
+                jarFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static boolean isSignatureFile(String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) != -1) {
+            return false;
+        }
+        final String upper = name.toUpperCase(Locale.ROOT);
+        return upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC");
+    }
+
+    private static String packageOf(String name) {
+        final int lastSlash = name.lastIndexOf('/', name.length() - 2);
+        return lastSlash == -1 ? "" : name.substring(0, lastSlash);
+    }
+
+    /** A classpath entry, along with the per-jar metadata LaunchClassLoader needs for every class it defines. */
+    static final class Source {
+        private static final Object NO_MANIFEST = new Object();
+        private static final List<CodeSigner> NO_SIGNERS = Collections.emptyList();
+        /** JarFile(File, boolean, int, Runtime.Version) and JarFile.runtimeVersion(), or null on Java 8. */
+        private static final MethodHandle OPEN_VERSIONED;
+        private static final Object RUNTIME_VERSION;
+
+        static {
+            MethodHandle openVersioned = null;
+            Object runtimeVersion = null;
+            try {
+                final Class<?> versionClass = Class.forName("java.lang.Runtime$Version");
+                runtimeVersion = JarFile.class.getMethod("runtimeVersion").invoke(null);
+                openVersioned = MethodHandles.publicLookup()
+                        .findConstructor(
+                                JarFile.class,
+                                MethodType.methodType(void.class, File.class, boolean.class, int.class, versionClass));
+            } catch (Throwable ignored) {
+            }
+            OPEN_VERSIONED = openVersioned;
+            RUNTIME_VERSION = runtimeVersion;
+        }
+
+        final URL url;
+        final int order;
+        final File directory;
+        /** The open jar, replaced by an unverified one once its signers come from the signature cache. */
+        volatile JarFile jarFile;
+        /** Package name to whether this jar's manifest seals it. */
+        final Map<String, Boolean> sealedPackages = new ConcurrentHashMap<>();
+
+        private final Map<List<CodeSigner>, CodeSource> codeSources = new ConcurrentHashMap<>();
+        private volatile Object manifest;
+        private boolean signed;
+        private volatile Mode mode = Mode.TRANSFORMED;
+        /** Entry name to code signers, taken from the signature cache; null while entries are verified as read. */
+        private volatile Map<String, CodeSigner[]> cachedSigners;
+        /** The verifying jar replaced by the unverified one, kept open for lookups still using its entries. */
+        private JarFile verifiedJarFile;
+
+        private Source(URL url, int order, File directory, JarFile jarFile) {
+            this.url = url;
+            this.order = order;
+            this.directory = directory;
+            this.jarFile = jarFile;
+        }
+
+        /** The jar's manifest, read once, or null if it has none or this is not a jar. */
+        Manifest getManifest() throws IOException {
+            Object current = manifest;
+            if (current == null) {
+                final Manifest read = jarFile == null ? null : jarFile.getManifest();
+                manifest = current = read == null ? NO_MANIFEST : read;
+            }
+            return current == NO_MANIFEST ? null : (Manifest) current;
+        }
+
+        /** Returns true if the jar contains signature files, so its entries may have code signers. */
+        boolean isSigned() {
+            return signed;
+        }
+
+        /** How the classes of this source are loaded. */
+        Mode getMode() {
+            return mode;
+        }
+
+        /** Loads the classes of this source untransformed from now on, as the parent class loader cannot see it. */
+        void parentCannotLoad() {
+            mode = Mode.UNTRANSFORMED;
+        }
+
+        /** Returns true if this jar was opened without verification, so its signers come from the signature cache. */
+        boolean hasCachedSigners() {
+            return cachedSigners != null;
+        }
+
+        CodeSigner[] getCachedSigners(String entryName) {
+            return cachedSigners.get(entryName);
+        }
+
+        /** One CodeSource per signer set whose location is this classpath entry, shared by all of its classes. */
+        CodeSource getCodeSource(CodeSigner[] signers) {
+            final List<CodeSigner> key = signers == null ? NO_SIGNERS : Arrays.asList(signers);
+            final CodeSource existing = codeSources.get(key);
+            return existing != null ? existing : codeSources.computeIfAbsent(key, k -> new CodeSource(url, signers));
+        }
+
+        /**
+         * Switches this signed jar to an unverified reopening when the signature cache holds its verified signers, or
+         * leaves it verifying its entries as they are read if it does not.
+         */
+        private void useCachedSigners() {
+            if (cachedSigners != null) {
+                return;
+            }
+            final File file = new File(jarFile.getName());
+            final Map<String, CodeSigner[]> signers = SignatureCache.load(file);
+            if (signers == null) {
+                return;
+            }
+            final JarFile unverified;
+            try {
+                unverified = openJar(file, false);
+            } catch (IOException e) {
+                LogWrapper.log(Level.WARN, e, "Could not reopen signed jar " + url);
+                return;
+            }
+            cachedSigners = signers;
+            verifiedJarFile = jarFile;
+            jarFile = unverified;
+        }
+
+        /**
+         * Opens a jar the way URLClassLoader does. On Java 9 and later that is for the running version, so a
+         * multi-release jar serves the entries under {@code META-INF/versions} that apply.
+         */
+        private static JarFile openJar(File file, boolean verify) throws IOException {
+            if (OPEN_VERSIONED == null) {
+                return new JarFile(file, verify);
+            }
+            try {
+                return (JarFile) OPEN_VERSIONED.invoke(file, verify, ZipFile.OPEN_READ, RUNTIME_VERSION);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        }
+
+        private static Source open(URL url, int order) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                file = new File(url.getPath());
+            }
+            if (url.getPath().endsWith("/")) {
+                return new Source(url, order, file, null);
+            }
+            if (!file.isFile()) {
+                return new Source(url, order, null, null);
+            }
+            try {
+                return new Source(url, order, null, openJar(file, true));
+            } catch (IOException e) {
+                LogWrapper.log(Level.WARN, e, "Could not index classpath entry " + url);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * How the classes of a classpath entry are loaded. A jar selects its mode with the {@value #ATTRIBUTE} main
+     * manifest attribute, and the properties file named by {@code legacy.classPathModes} can set or override it for
+     * jars and directories. Its keys are file names, where {@code *} matches any run of characters, for example
+     * {@code scala-library-*.jar=untransformed}. The mode is resolved once, when the entry is indexed.
+     */
+    enum Mode {
+        /** Classes go through the rename and transformer chain, the default. */
+        TRANSFORMED,
+        /** Classes are defined by LaunchClassLoader exactly as they are in the jar, like a transformer exclusion. */
+        UNTRANSFORMED,
+        /**
+         * Classes are loaded by the parent class loader, like a class loader exclusion. An entry the parent cannot see,
+         * such as a jar added by a tweaker, is loaded {@link #UNTRANSFORMED} instead.
+         */
+        PARENT;
+
+        static final String ATTRIBUTE = "LaunchWrapper-ClassLoading";
+        private static final Map<Pattern, Mode> CONFIGURED = loadConfiguration();
+
+        static Mode of(Source source) {
+            final File file = source.directory != null
+                    ? source.directory
+                    : source.jarFile != null ? new File(source.jarFile.getName()) : null;
+            if (file == null) {
+                return TRANSFORMED;
+            }
+            for (Map.Entry<Pattern, Mode> entry : CONFIGURED.entrySet()) {
+                if (entry.getKey().matcher(file.getName()).matches()) {
+                    return entry.getValue();
+                }
+            }
+            try {
+                final Manifest manifest = source.getManifest();
+                final String value = manifest != null ? manifest.getMainAttributes().getValue(ATTRIBUTE) : null;
+                if (value != null) {
+                    final Mode mode = parse(value);
+                    if (mode != null) {
+                        return mode;
+                    }
+                    LogWrapper.warning("Ignoring unknown {} value {} in {}", ATTRIBUTE, value, file);
+                }
+            } catch (IOException e) {
+                LogWrapper.fine("Could not read the manifest of {}: {}", file, e);
+            }
+            return TRANSFORMED;
+        }
+
+        private static Mode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static Map<Pattern, Mode> loadConfiguration() {
+            final String path = System.getProperty("legacy.classPathModes");
+            final Map<Pattern, Mode> configured = new LinkedHashMap<>();
+            if (path == null) {
+                return configured;
+            }
+            final Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(new File(path).toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                LogWrapper.warning("Could not read class path modes from {}: {}", path, e);
+                return configured;
+            }
+            for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+                final String value = properties.getProperty(name);
+                final Mode mode = parse(value);
+                if (mode == null) {
+                    LogWrapper.warning("Ignoring unknown class path mode {} for {}", value, name);
+                    continue;
+                }
+                final String[] parts = name.split("\\*", -1);
+                final StringBuilder regex = new StringBuilder(Pattern.quote(parts[0]));
+                for (int i = 1; i < parts.length; i++) {
+                    regex.append(".*").append(Pattern.quote(parts[i]));
+                }
+                configured.put(Pattern.compile(regex.toString()), mode);
+            }
+            return configured;
+        }
+    }
+
+    static final class Resource {
+        private final Source source;
+        private final String name;
+        private final JarEntry entry;
+        private final File file;
+
+        private Resource(Source source, String name, JarEntry entry, File file) {
+            this.source = source;
+            this.name = name;
+            this.entry = entry;
+            this.file = file;
+        }
+
+        /** The same URL URLClassLoader.findResource would have returned for this entry. */
+        URL getURL() throws MalformedURLException {
+            if (entry != null) {
+                return new URL("jar:" + source.url.toExternalForm() + "!/" + name);
+            }
+            return new URL(source.url, name);
+        }
+
+        /** The classpath URL providing this resource. */
+        URL getSourceURL() {
+            return source.url;
+        }
+
+        Source getSource() {
+            return source;
+        }
+
+        JarFile getJarFile() {
+            return source.jarFile;
+        }
+
+        JarEntry getJarEntry() {
+            return entry;
+        }
+
+        /** The uncompressed size of the resource, or -1 if unknown. */
+        int getSize() {
+            final long size = entry != null ? entry.getSize() : file.length();
+            return size >= 0 && size < Integer.MAX_VALUE ? (int) size : -1;
+        }
+
+        InputStream openStream() throws IOException {
+            return entry != null ? source.jarFile.getInputStream(entry) : new FileInputStream(file);
+        }
+    }
+}
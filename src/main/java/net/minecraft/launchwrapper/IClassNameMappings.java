@@ -0,0 +1,17 @@
+package net.minecraft.launchwrapper;
+
+import java.util.Map;
+
+/**
+ * Optional companion interface for an {@link IClassNameTransformer} whose mapping no longer changes once it is
+ * registered. {@link LaunchClassLoader} memoizes the remapping of such a transformer and preloads the memo from
+ * {@link #getClassNameMappings()}, so renaming a class becomes a single hash lookup.
+ */
+public interface IClassNameMappings {
+
+    /**
+     * The full class mapping, from unmapped name to remapped name, both in dotted form. Names that are not listed are
+     * still remapped through the transformer, and the results are memoized as well.
+     */
+    Map<String, String> getClassNameMappings();
+}
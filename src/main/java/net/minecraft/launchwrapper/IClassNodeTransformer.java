@@ -0,0 +1,51 @@
+package net.minecraft.launchwrapper;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A class transformer working on an ASM tree. When several of these are registered next to each other,
+ * {@link LaunchClassLoader} parses each class into one {@link ClassNode}, hands it to all of them in turn and only
+ * writes it back to bytes once, instead of once per transformer. This needs the transformer to see the same ASM
+ * classes as LaunchWrapper, so it must be loaded by the parent class loader, for example through a class loader
+ * exclusion for its package, unless {@code org.objectweb.asm.} is excluded too. Otherwise it is called through
+ * {@link #transform(String, String, byte[])}.
+ */
+public interface IClassNodeTransformer extends IClassTransformer {
+
+    /**
+     * Transforms the shared node in place.
+     *
+     * @return true if the node was changed, false if it was left untouched
+     */
+    boolean transform(String name, String transformedName, ClassNode classNode);
+
+    /**
+     * ClassReader flags needed when parsing the node. A node shared between transformers is expanded if any of them
+     * asks for {@link ClassReader#EXPAND_FRAMES}, but only skips parts of the class that all of them agree to skip.
+     */
+    default int getReaderFlags() {
+        return 0;
+    }
+
+    /** ClassWriter flags needed to write the node back after this transformer changed it. */
+    default int getWriterFlags() {
+        return ClassWriter.COMPUTE_MAXS;
+    }
+
+    @Override
+    default byte[] transform(String name, String transformedName, byte[] basicClass) {
+        if (basicClass == null) {
+            return null;
+        }
+        final ClassNode classNode = new ClassNode();
+        new ClassReader(basicClass).accept(classNode, getReaderFlags());
+        if (!transform(name, transformedName, classNode)) {
+            return basicClass;
+        }
+        final ClassWriter writer = new LaunchClassWriter(getWriterFlags());
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+}
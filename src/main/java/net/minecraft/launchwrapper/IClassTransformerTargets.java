@@ -0,0 +1,27 @@
+package net.minecraft.launchwrapper;
+
+/**
+ * Optional companion interface for an {@link IClassTransformer}. A transformer implementing it is only called for the
+ * classes it declares here, instead of for every class loaded by {@link LaunchClassLoader}. All names are transformed
+ * (runtime) names. Transformers that do not implement this interface keep being called for every class.
+ */
+public interface IClassTransformerTargets {
+
+    /** Exact class names this transformer applies to, e.g. {@code net.minecraft.client.Minecraft}, or null. */
+    default String[] getTargetClasses() {
+        return null;
+    }
+
+    /** Packages this transformer applies to, including their subpackages, e.g. {@code com.example.mod}, or null. */
+    default String[] getTargetPackages() {
+        return null;
+    }
+
+    /**
+     * A cheap check for classes not covered by {@link #getTargetClasses()} or {@link #getTargetPackages()}. It is called
+     * for every class, so it must not parse bytes or load classes.
+     */
+    default boolean isTargetClass(String name, String transformedName) {
+        return false;
+    }
+}
@@ -69,6 +69,10 @@ public class Launch {
         final OptionSpec<String> tweakClassOption = parser.accepts("tweakClass", "Tweak class(es) to load")
                 .withRequiredArg()
                 .defaultsTo(DEFAULT_TWEAK);
+        final OptionSpec<File> prebakeOption = parser.accepts(
+                        "prebake", "Transform the classpath ahead of time into this archive instead of launching")
+                .withRequiredArg()
+                .ofType(File.class);
         final OptionSpec<String> nonOption = parser.nonOptions();
 
         final OptionSet options = parser.parse(args);
@@ -76,6 +80,8 @@ public class Launch {
         assetsDir = options.valueOf(assetsDirOption);
         final String profileName = options.valueOf(profileOption);
         final List<String> tweakClassNames = new ArrayList<>(options.valuesOf(tweakClassOption));
+        classLoader.useSignatureCache();
+        classLoader.beginStartupWarmup();
 
         final List<String> argumentList = new ArrayList<>();
         // This list of names will be interacted with through tweakers. They can append to this list
@@ -156,13 +162,21 @@ public class Launch {
                 argumentList.addAll(Arrays.asList(tweaker.getLaunchArguments()));
             }
 
+            final File prebakeFile = options.valueOf(prebakeOption);
+            if (prebakeFile != null) {
+                classLoader.prebake(prebakeFile);
+                System.exit(0);
+            }
+
             // Finally we turn to the primary tweaker, and let it tell us where to go to launch
             final String launchTarget = primaryTweaker.getLaunchTarget();
             final Class<?> clazz = Class.forName(launchTarget, false, classLoader);
             final Method mainMethod = clazz.getMethod("main", String[].class);
 
+            classLoader.pretransformStartupClasses();
             LogWrapper.info("Launching wrapped minecraft {%s}", launchTarget);
             mainMethod.invoke(null, (Object) argumentList.toArray(new String[0]));
+            classLoader.reportProfile();
         } catch (Exception e) {
             originalSysErr.println(e.getMessage());
             e.printStackTrace(originalSysErr);
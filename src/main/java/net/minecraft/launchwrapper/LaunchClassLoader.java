@@ -1,6 +1,9 @@
 package net.minecraft.launchwrapper;
 
 import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.net.JarURLConnection;
 import java.net.URL;
@@ -8,14 +11,16 @@ import java.net.URLClassLoader;
 import java.net.URLConnection;
 import java.security.CodeSigner;
 import java.security.CodeSource;
-import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 
@@ -24,18 +29,21 @@ public class LaunchClassLoader extends URLClassLoader {
     private List<URL> sources;
     private ClassLoader parent = getClass().getClassLoader();
 
-    private List<IClassTransformer> transformers = new ArrayList<>(2);
+    private List<IClassTransformer> transformers = new TransformerList();
+    private volatile TransformerDispatch transformerDispatch = TransformerDispatch.EMPTY;
     private Map<String, Class<?>> cachedClasses = new ConcurrentHashMap<>();
-    private Set<String> invalidClasses = new HashSet<>(1000);
+    private Set<String> invalidClasses = new BoundedNameSet(BoundedNameSet.DEFAULT_LIMIT);
 
-    private Set<String> classLoaderExceptions = new HashSet<>();
-    private Set<String> transformerExceptions = new HashSet<>();
-    private Map<String, byte[]> resourceCache = new ConcurrentHashMap<>(1000);
-    private Set<String> negativeResourceCache = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private Set<String> classLoaderExceptions = new PrefixSet();
+    private Set<String> transformerExceptions = new PrefixSet();
+    private Map<String, byte[]> resourceCache = RESOURCE_RETENTION.createCache();
+    private Set<String> negativeResourceCache = new BoundedNameSet(BoundedNameSet.DEFAULT_LIMIT);
     private Map<Package, Manifest> packageManifests = new ConcurrentHashMap<>(); // dummy for fastcraft
     private static final Manifest EMPTY = new Manifest(); // dummy for fastcraft
 
-    private IClassNameTransformer renameTransformer;
+    private volatile IClassNameTransformer renameTransformer;
+    private volatile ClassNameCache classNameCache;
+    private final ClassPathIndex classPathIndex = new ClassPathIndex();
 
     private final ThreadLocal<byte[]> loadBuffer = new ThreadLocal<>();
 
@@ -51,21 +59,46 @@ public class LaunchClassLoader extends URLClassLoader {
             DEBUG && Boolean.parseBoolean(System.getProperty("legacy.debugClassLoadingSave", "false"));
     private static final boolean DEBUG_SLIM =
             DEBUG && Boolean.parseBoolean(System.getProperty("legacy.debugClassLoadingSlim", "false"));
+    private static final boolean SHARED_CODE_SOURCE =
+            Boolean.parseBoolean(System.getProperty("legacy.sharedCodeSource", "false"));
+    private static final boolean CHEAP_REPEATED_MISSES =
+            Boolean.parseBoolean(System.getProperty("legacy.cheapClassNotFound", "false"))
+                    && !Boolean.parseBoolean(System.getProperty("legacy.debugClassNotFound", "false"));
+    private static final ResourceRetention RESOURCE_RETENTION = ResourceRetention.fromProperty();
+    private static final boolean TRANSFORM_CACHE =
+            Boolean.parseBoolean(System.getProperty("legacy.transformCache", "false"));
     private static File tempFolder = null;
+    private static ClassDumpWriter dumpWriter;
+    private volatile TransformedClassCache transformCache;
+    private final StartupProfile startupProfile = StartupProfile.ENABLED ? new StartupProfile() : null;
+    private final RepeatedMisses repeatedMisses =
+            RepeatedMisses.ENABLED || LoadStatistics.ENABLED ? new RepeatedMisses() : null;
+    private final LoadProfiler profiler =
+            LoadProfiler.ENABLED || DEBUG_FINER ? new LoadProfiler(repeatedMisses) : null;
+    private final LoadStatistics statistics = LoadStatistics.ENABLED ? new LoadStatistics() : null;
+    private final ClassHierarchy classHierarchy = new ClassHierarchy(this);
+    private final PrebakedClasses prebakedClasses =
+            PrebakedClasses.ARCHIVE != null ? PrebakedClasses.open(new File(PrebakedClasses.ARCHIVE)) : null;
+    private volatile ObjectName managementName;
+    private volatile boolean closed;
+    private static final String MANAGEMENT_NAME_PREFIX = "net.minecraft.launchwrapper:type=LaunchClassLoader,name=";
     // HybridFix start - Allow child loading
-    private final List<ClassLoader> children = new ArrayList<>();
+    private final List<ClassLoader> children = new CopyOnWriteArrayList<>();
+    /** Package name to the child that last provided a class of it, tried first for the next class of that package. */
+    private final Map<String, ClassLoader> childByPackage = new ConcurrentHashMap<>();
     private final ThreadLocal<ClassLoader> from = new ThreadLocal<>();
-    private static final Method MD_FIND_CLASS;
+    /** ClassLoader.findClass(String), or null if it cannot be made accessible. */
+    private static final MethodHandle MD_FIND_CLASS;
     public static boolean childLoadingEnabled = false;
 
     static {
-        Method mdFind = null;
+        ClassLoader.registerAsParallelCapable();
+
+        MethodHandle mdFind = null;
         try {
-            mdFind = ClassLoader.class.getDeclaredMethod("findClass", String.class);
-            try {
-                mdFind.setAccessible(true);
-            } catch (Throwable ignored) {
-            }
+            final Method method = ClassLoader.class.getDeclaredMethod("findClass", String.class);
+            method.setAccessible(true);
+            mdFind = MethodHandles.lookup().unreflect(method);
         } catch (Throwable ignored) {
         }
         MD_FIND_CLASS = mdFind;
@@ -79,6 +112,9 @@ public class LaunchClassLoader extends URLClassLoader {
     public LaunchClassLoader(URL[] sources) {
         super(sources, null);
         this.sources = new ArrayList<>(Arrays.asList(sources));
+        for (URL source : sources) {
+            classPathIndex.add(source);
+        }
 
         // classloader exclusions
         addClassLoaderExclusion("java.");
@@ -109,43 +145,46 @@ public class LaunchClassLoader extends URLClassLoader {
                         "DEBUG_SAVE Enabled, saving all classes to \"{}\"",
                         tempFolder.getAbsolutePath().replace('\\', '/'));
                 tempFolder.mkdirs();
+                dumpWriter = new ClassDumpWriter(tempFolder);
             }
         }
+
+        if (System.getProperty("legacy.cacheDirectory") != null) {
+            classPathIndex.useSignatureCache();
+        }
+
+        if (repeatedMisses != null && profiler == null) {
+            repeatedMisses.reportOnShutdown();
+        }
+        if (statistics != null) {
+            registerManagementBean();
+        }
+    }
+
+    /**
+     * Starts using the signature cache, if it is enabled. Called by Launch once the game directory is known, since the
+     * cache lives under it unless {@code legacy.cacheDirectory} is set.
+     */
+    void useSignatureCache() {
+        classPathIndex.useSignatureCache();
     }
 
     // HybridFix start - Scan plugins for mixin support
-    private final Map<String, File> pluginClass2JarMap = new HashMap<>();
-    private volatile boolean pluginsScanned = false;
+    private volatile PluginIndex pluginIndex;
     private static final String PLUGIN_DIRECTORY = System.getProperty("legacy.pluginDirectory", "plugins");
 
-    private void scanPlugins() {
-        if (pluginsScanned) return;
-        synchronized (pluginClass2JarMap) {
-            if (pluginsScanned) return;
-            File pluginDir = new File(Launch.minecraftHome, PLUGIN_DIRECTORY);
-            if (pluginDir.exists() && pluginDir.isDirectory()) {
-                File[] jars = pluginDir.listFiles((dir, name) -> dir.isFile() && name.toLowerCase(Locale.ROOT).endsWith(".jar"));
-                if (jars != null) {
-                    Arrays.sort(jars);
-                    for (File jar : jars) {
-                        try (JarFile jf = new JarFile(jar)) {
-                            if (jf.getEntry("plugin.yml") == null) {
-                                continue;
-                            }
-                            jf.stream().forEach(entry -> {
-                                if (entry.getName().endsWith(".class")) {
-                                    String path = entry.getName();
-                                    String className = path.substring(0, path.length() - 6).replace('/', '.');
-                                    pluginClass2JarMap.putIfAbsent(className, jar);
-                                }
-                            });
-                        } catch (Exception ignored) {
-                        }
-                    }
+    private PluginIndex scanPlugins() {
+        PluginIndex index = pluginIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = pluginIndex;
+                if (index == null) {
+                    final File pluginDir = new File(Launch.minecraftHome, PLUGIN_DIRECTORY);
+                    pluginIndex = index = PluginIndex.scan(pluginDir, new File(getCacheDirectory(), "plugins.idx"));
                 }
             }
-            pluginsScanned = true;
         }
+        return index;
     }
     // HybridFix end - Scan plugins for mixin support
 
@@ -156,6 +195,8 @@ public class LaunchClassLoader extends URLClassLoader {
             transformers.add(transformer);
             if (transformer instanceof IClassNameTransformer && renameTransformer == null) {
                 renameTransformer = (IClassNameTransformer) transformer;
+                // supertypes read so far were not renamed
+                classHierarchy.clear();
             }
             if (DEBUG) {
                 LogWrapper.info("Registered transformer {}", transformerClassName);
@@ -172,136 +213,67 @@ public class LaunchClassLoader extends URLClassLoader {
     public Class<?> findClass(final String name) throws ClassNotFoundException {
         if (this.equals(from.get())) return null; // HybridFix - Allow child loading - prevent infinite loop
         if (invalidClasses.contains(name)) {
-            throw new ClassNotFoundException(name);
+            if (repeatedMisses != null) {
+                repeatedMisses.record(name);
+            }
+            throw CHEAP_REPEATED_MISSES ? new KnownMissingClassException(name) : new ClassNotFoundException(name);
         }
 
-        for (final String exception : classLoaderExceptions) {
-            if (name.startsWith(exception)) {
-                return parent.loadClass(name);
+        if (startsWithAny(classLoaderExceptions, name)) {
+            return parent.loadClass(name);
+        }
+
+        final Class<?> cached = cachedClasses.get(name);
+        if (cached != null) {
+            if (statistics != null) {
+                statistics.classCacheHits.increment();
             }
+            return cached;
         }
 
-        if (cachedClasses.containsKey(name)) {
-            return cachedClasses.get(name);
+        if (startsWithAny(transformerExceptions, name)) {
+            return findUntransformedClass(name);
         }
 
-        for (final String exception : transformerExceptions) {
-            if (name.startsWith(exception)) {
-                try {
-                    final Class<?> clazz = super.findClass(name);
-                    cachedClasses.put(name, clazz);
-                    return clazz;
-                } catch (ClassNotFoundException e) {
-                    invalidClasses.add(name);
-                    throw e;
-                }
-            }
+        // the same lookup gives the mode of the class and where defineTransformedClass reads it from
+        final String fileName = untransformName(name).replace('.', '/').concat(".class");
+        final ClassPathIndex.Resource resource = classPathIndex.find(fileName);
+        if (resource != null && resource.getSource().getMode() != ClassPathIndex.Mode.TRANSFORMED) {
+            return findClassWithMode(name, resource.getSource());
         }
 
         try {
             final String transformedName = transformName(name);
-            if (cachedClasses.containsKey(transformedName)) {
-                return cachedClasses.get(transformedName);
+            final Class<?> cachedTransformed = cachedClasses.get(transformedName);
+            if (cachedTransformed != null) {
+                if (statistics != null) {
+                    statistics.classCacheHits.increment();
+                }
+                return cachedTransformed;
             }
 
-            final String untransformedName = untransformName(name);
-
-            final int lastDot = untransformedName.lastIndexOf('.');
-            final String packageName = lastDot == -1 ? "" : untransformedName.substring(0, lastDot);
-            final String fileName = untransformedName.replace('.', '/').concat(".class");
-            URLConnection urlConnection = findCodeSourceConnectionFor(fileName);
-
-            CodeSigner[] signers = null;
-
-            // HybridFix start - Scan plugins for mixin support
-            if (urlConnection == null) {
-                scanPlugins();
-                if (pluginClass2JarMap.containsKey(untransformedName)) {
-                    throw new ClassNotFoundException(name);
+            // Every class goes through the transformer chain exactly once, even if several threads ask for it
+            final long start = profiler != null ? profiler.enterFindClass() : 0L;
+            final long started = statistics != null ? System.nanoTime() : 0L;
+            try {
+                synchronized (getClassLoadingLock(transformedName)) {
+                    return defineTransformedClass(name, transformedName, fileName, resource);
                 }
-            }
-            // HybridFix end - Scan plugins for mixin support
-
-            if (lastDot > -1 && !untransformedName.startsWith("net.minecraft.")) {
-                if (urlConnection instanceof JarURLConnection) {
-                    final JarURLConnection jarURLConnection = (JarURLConnection) urlConnection;
-                    final JarFile jarFile = jarURLConnection.getJarFile();
-
-                    if (jarFile != null && jarFile.getManifest() != null) {
-                        final Manifest manifest = jarFile.getManifest();
-                        final JarEntry entry = jarFile.getJarEntry(fileName);
-
-                        Package pkg = getPackage(packageName);
-                        getClassBytes(untransformedName);
-                        signers = entry.getCodeSigners();
-                        if (pkg == null) {
-                            pkg = definePackage(packageName, manifest, jarURLConnection.getJarFileURL());
-                        } else {
-                            if (pkg.isSealed() && !pkg.isSealed(jarURLConnection.getJarFileURL())) {
-                                LogWrapper.severe(
-                                        "The jar file {} is trying to seal already secured path {}",
-                                        jarFile.getName(),
-                                        packageName);
-                            } else if (isSealed(packageName, manifest)) {
-                                LogWrapper.severe(
-                                        "The jar file {} has a security seal for path {}, but that path is defined and not secure",
-                                        jarFile.getName(),
-                                        packageName);
-                            }
-                        }
-                    }
-                } else {
-                    Package pkg = getPackage(packageName);
-                    if (pkg == null) {
-                        pkg = definePackage(packageName, null, null, null, null, null, null, null);
-                    } else if (pkg.isSealed()) {
-                        LogWrapper.severe(
-                                "The URL {} is defining elements for sealed path {}",
-                                urlConnection.getURL(),
-                                packageName);
-                    }
+            } finally {
+                if (profiler != null) {
+                    profiler.exitFindClass(start);
                 }
-            }
-
-            final byte[] transformedClass =
-                    runTransformers(untransformedName, transformedName, getClassBytes(untransformedName));
-
-            if (transformedClass == null) {
-                final String msg =
-                        "Class " + untransformedName + "|" + transformedName + " is null after running transformers";
-                final NullPointerException npe = new NullPointerException(msg);
-                if (DEBUG) {
-                    System.err.println(msg);
-                    npe.printStackTrace();
+                if (statistics != null) {
+                    statistics.loadLatency.record(System.nanoTime() - started);
                 }
-                throw npe;
             }
-
-            final CodeSource codeSource =
-                    urlConnection == null ? null : new CodeSource(urlConnection.getURL(), signers);
-            final Class<?> clazz =
-                    defineClass(transformedName, transformedClass, 0, transformedClass.length, codeSource);
-            cachedClasses.put(transformedName, clazz);
-            return clazz;
         } catch (Throwable e) {
             // HybridFix start - Allow child loading
             boolean hasChildren = !children.isEmpty();
             if (childLoadingEnabled && hasChildren) {
-                from.set(this);
-                try {
-                    for (ClassLoader child : children) {
-                        final String transformedName = transformName(name);
-                        try {
-                            final Class<?> clazz = (Class<?>) MD_FIND_CLASS.invoke(child, transformedName);
-                            if (clazz != null) {
-                                cachedClasses.put(name, clazz);
-                                return clazz;
-                            }
-                        } catch (Exception ignored) {
-                        }
-                    }
-                } finally {
-                    from.remove();
+                final Class<?> clazz = findClassInChildren(name);
+                if (clazz != null) {
+                    return clazz;
                 }
             }
             if (childLoadingEnabled || !hasChildren) invalidClasses.add(name);
@@ -315,52 +287,433 @@ public class LaunchClassLoader extends URLClassLoader {
         }
     }
 
-    private void saveTransformedClass(final byte[] data, final String transformedName) {
-        if (tempFolder == null || data == null || transformedName == null) {
+    // HybridFix start - Allow child loading
+    /**
+     * Asks the children for a class this loader could not provide, starting with the child that served the class's
+     * package last time. Returns null if none of them has it.
+     */
+    private Class<?> findClassInChildren(final String name) {
+        if (MD_FIND_CLASS == null) {
+            return null;
+        }
+        final String transformedName = transformName(name);
+        final int lastDot = transformedName.lastIndexOf('.');
+        final String packageName = lastDot == -1 ? "" : transformedName.substring(0, lastDot);
+        final ClassLoader routed = childByPackage.get(packageName);
+        from.set(this);
+        try {
+            Class<?> clazz = routed != null ? findClassInChild(routed, transformedName) : null;
+            if (clazz == null) {
+                for (ClassLoader child : children) {
+                    if (child != routed && (clazz = findClassInChild(child, transformedName)) != null) {
+                        childByPackage.put(packageName, child);
+                        break;
+                    }
+                }
+            }
+            if (clazz != null) {
+                cachedClasses.put(name, clazz);
+            }
+            return clazz;
+        } finally {
+            from.remove();
+        }
+    }
+
+    private static Class<?> findClassInChild(final ClassLoader child, final String name) {
+        try {
+            return (Class<?>) MD_FIND_CLASS.invokeExact(child, name);
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+    // HybridFix end - Allow child loading
+
+    private Class<?> findUntransformedClass(final String name) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            final Class<?> loaded = cachedClasses.get(name);
+            if (loaded != null) {
+                return loaded;
+            }
+            try {
+                final Class<?> clazz = super.findClass(name);
+                cachedClasses.put(name, clazz);
+                return clazz;
+            } catch (ClassNotFoundException e) {
+                invalidClasses.add(name);
+                throw e;
+            }
+        }
+    }
+
+    /** Loads a class from a source with the parent or untransformed mode, see {@link ClassPathIndex.Mode}. */
+    private Class<?> findClassWithMode(final String name, final ClassPathIndex.Source source)
+            throws ClassNotFoundException {
+        if (source.getMode() == ClassPathIndex.Mode.PARENT) {
+            try {
+                return parent.loadClass(name);
+            } catch (ClassNotFoundException e) {
+                LogWrapper.fine(
+                        "The parent class loader cannot see {}, loading its classes untransformed", source.url);
+                source.parentCannotLoad();
+            }
+        }
+        return findUntransformedClass(name);
+    }
+
+    /**
+     * Defines a class through the transformer chain, given the class file name of its untransformed name and the index
+     * entry for it, if the index has one.
+     */
+    private Class<?> defineTransformedClass(
+            final String name,
+            final String transformedName,
+            final String fileName,
+            final ClassPathIndex.Resource resource)
+            throws Exception {
+        final Class<?> cached = cachedClasses.get(transformedName);
+        if (cached != null) {
+            return cached;
+        }
+        if (invalidClasses.contains(name)) {
+            throw new ClassNotFoundException(name);
+        }
+
+        final String untransformedName = untransformName(name);
+
+        final int lastDot = untransformedName.lastIndexOf('.');
+        final String packageName = lastDot == -1 ? "" : untransformedName.substring(0, lastDot);
+        final URLConnection urlConnection =
+                resource != null || classPathIndex.isComplete() ? null : findCodeSourceConnectionFor(fileName);
+        final URL codeSourceURL = urlConnection != null ? urlConnection.getURL() : null;
+
+        CodeSigner[] signers = null;
+
+        // HybridFix start - Scan plugins for mixin support
+        if (resource == null && codeSourceURL == null) {
+            if (scanPlugins().contains(untransformedName)) {
+                throw new ClassNotFoundException(name);
+            }
+        }
+        // HybridFix end - Scan plugins for mixin support
+
+        if (lastDot > -1 && !untransformedName.startsWith("net.minecraft.")) {
+            if (resource != null && resource.getJarFile() != null) {
+                signers = definePackageFromSource(packageName, untransformedName, resource);
+            } else if (urlConnection instanceof JarURLConnection) {
+                final JarURLConnection jarURLConnection = (JarURLConnection) urlConnection;
+                signers = definePackageFromJar(
+                        packageName,
+                        untransformedName,
+                        jarURLConnection.getJarFile(),
+                        jarURLConnection.getJarFileURL(),
+                        fileName);
+            } else {
+                Package pkg = getPackage(packageName);
+                if (pkg == null) {
+                    try {
+                        definePackage(packageName, null, null, null, null, null, null, null);
+                    } catch (IllegalArgumentException e) {
+                        // defined concurrently by another thread
+                    }
+                } else if (pkg.isSealed()) {
+                    LogWrapper.severe(
+                            "The URL {} is defining elements for sealed path {}",
+                            resource != null ? resource.getURL() : codeSourceURL,
+                            packageName);
+                }
+            }
+        }
+
+        byte[] transformedClass = null;
+        if (startupProfile != null) {
+            transformedClass = startupProfile.take(transformedName, getTransformerDispatch());
+        }
+        if (transformedClass == null) {
+            transformedClass = transformClass(untransformedName, transformedName);
+        }
+
+        if (transformedClass == null) {
+            final String msg =
+                    "Class " + untransformedName + "|" + transformedName + " is null after running transformers";
+            final NullPointerException npe = new NullPointerException(msg);
+            if (DEBUG) {
+                System.err.println(msg);
+                npe.printStackTrace();
+            }
+            throw npe;
+        }
+
+        final CodeSource codeSource;
+        if (resource != null) {
+            codeSource = SHARED_CODE_SOURCE
+                    ? resource.getSource().getCodeSource(signers)
+                    : new CodeSource(resource.getURL(), signers);
+        } else {
+            codeSource = codeSourceURL == null ? null : new CodeSource(codeSourceURL, signers);
+        }
+        final Class<?> clazz = defineClass(transformedName, transformedClass, 0, transformedClass.length, codeSource);
+        cachedClasses.put(transformedName, clazz);
+        if (startupProfile != null) {
+            startupProfile.record(untransformedName);
+        }
+        if (profiler != null) {
+            profiler.classDefined();
+        }
+        if (statistics != null) {
+            statistics.classesDefined.increment();
+        }
+        if (RESOURCE_RETENTION == ResourceRetention.DROP) {
+            resourceCache.remove(untransformedName);
+        }
+        return clazz;
+    }
+
+    /**
+     * Starts prefetching the class bytes listed in the startup profile of the previous launch, if profiling is enabled.
+     * Called by Launch once the game directory is known, so the reads overlap with the tweakers.
+     */
+    void beginStartupWarmup() {
+        if (startupProfile == null) {
+            return;
+        }
+        final List<String> names = startupProfile.load(getCacheDirectory(), sources);
+        startupProfile.submit(names, this, name -> {
+            try {
+                // a class missing now may still come with a jar a tweaker adds, so misses are not remembered
+                getClassBytes(name, false);
+            } catch (Throwable ignored) {
+            }
+        });
+    }
+
+    /**
+     * Runs the now complete transformer chain over the profiled classes in the background. Bytes are only used if the
+     * chain is still the same when the class is actually loaded. Each class is pre-transformed under its class loading
+     * lock, so a thread loading it meanwhile waits for those bytes instead of transforming it a second time.
+     */
+    void pretransformStartupClasses() {
+        if (startupProfile == null || !StartupProfile.PRETRANSFORM) {
             return;
         }
+        startupProfile.submit(startupProfile.getReplay(), this, this::pretransform);
+    }
 
-        final File outFile = new File(tempFolder, transformedName.replace('.', File.separatorChar) + ".class");
-        final File outDir = outFile.getParentFile();
+    private void pretransform(final String untransformedName) {
+        final String transformedName = transformName(untransformedName);
+        if (isExcluded(transformedName)) {
+            return;
+        }
+        // findClass never takes prepared bytes for these, and stateful transformers must not see them
+        final String fileName = untransformedName.replace('.', '/').concat(".class");
+        if (classPathIndex.modeOf(fileName) != ClassPathIndex.Mode.TRANSFORMED) {
+            return;
+        }
+        synchronized (getClassLoadingLock(transformedName)) {
+            if (cachedClasses.containsKey(transformedName) || startupProfile.isPrepared(transformedName)) {
+                return;
+            }
+            final TransformerDispatch dispatch = getTransformerDispatch();
+            try {
+                final byte[] transformedClass = transformClass(untransformedName, transformedName);
+                if (transformedClass != null) {
+                    startupProfile.prepare(transformedName, dispatch, transformedClass);
+                }
+            } catch (Throwable e) {
+                if (DEBUG) LogWrapper.log(Level.DEBUG, e, "Could not pre-transform " + transformedName);
+            }
+        }
+    }
 
-        if (!outDir.exists()) {
-            outDir.mkdirs();
+    private boolean isExcluded(final String name) {
+        return startsWithAny(classLoaderExceptions, name) || startsWithAny(transformerExceptions, name);
+    }
+
+    /** The exclusion sets may have been swapped for plain sets through reflection, so fall back to a scan. */
+    private static boolean startsWithAny(final Set<String> prefixes, final String name) {
+        if (prefixes instanceof PrefixSet) {
+            return ((PrefixSet) prefixes).matchesPrefixOf(name);
+        }
+        for (final String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        if (outFile.exists()) {
-            outFile.delete();
+    /**
+     * Same as {@link #definePackageFromJar} for an indexed jar, using the manifest, signature and seal information cached
+     * on its source. Classes of unsigned jars are not read here, since they cannot have signers.
+     */
+    private CodeSigner[] definePackageFromSource(
+            final String packageName, final String untransformedName, final ClassPathIndex.Resource resource)
+            throws IOException {
+        final ClassPathIndex.Source source = resource.getSource();
+        final Manifest manifest = source.getManifest();
+        if (manifest == null) {
+            return null;
         }
 
-        try {
-            LogWrapper.fine(
-                    "Saving transformed class \"{}\" to \"{}\"",
-                    transformedName,
-                    outFile.getAbsolutePath().replace('\\', '/'));
+        Package pkg = getPackage(packageName);
+        CodeSigner[] signers = null;
+        if (source.hasCachedSigners()) {
+            signers = source.getCachedSigners(resource.getJarEntry().getName());
+        } else if (source.isSigned()) {
+            // the signers of an entry are only known once it has been read
+            getClassBytes(untransformedName);
+            signers = resource.getJarEntry().getCodeSigners();
+        }
+        if (pkg == null) {
+            try {
+                definePackage(packageName, manifest, source.url);
+            } catch (IllegalArgumentException e) {
+                // defined concurrently by another thread
+            }
+        } else {
+            if (pkg.isSealed() && !pkg.isSealed(source.url)) {
+                LogWrapper.severe(
+                        "The jar file {} is trying to seal already secured path {}",
+                        source.jarFile.getName(),
+                        packageName);
+            } else if (source.sealedPackages.computeIfAbsent(packageName, path -> isSealed(path, manifest))) {
+                LogWrapper.severe(
+                        "The jar file {} has a security seal for path {}, but that path is defined and not secure",
+                        source.jarFile.getName(),
+                        packageName);
+            }
+        }
+        return signers;
+    }
 
-            try (OutputStream output = new FileOutputStream(outFile)) {
-                output.write(data);
+    private CodeSigner[] definePackageFromJar(
+            final String packageName,
+            final String untransformedName,
+            final JarFile jarFile,
+            final URL jarFileURL,
+            final String fileName)
+            throws IOException {
+        if (jarFile == null || jarFile.getManifest() == null) {
+            return null;
+        }
+        final Manifest manifest = jarFile.getManifest();
+        final JarEntry entry = jarFile.getJarEntry(fileName);
+
+        Package pkg = getPackage(packageName);
+        getClassBytes(untransformedName);
+        final CodeSigner[] signers = entry.getCodeSigners();
+        if (pkg == null) {
+            try {
+                definePackage(packageName, manifest, jarFileURL);
+            } catch (IllegalArgumentException e) {
+                // defined concurrently by another thread
+            }
+        } else {
+            if (pkg.isSealed() && !pkg.isSealed(jarFileURL)) {
+                LogWrapper.severe(
+                        "The jar file {} is trying to seal already secured path {}", jarFile.getName(), packageName);
+            } else if (isSealed(packageName, manifest)) {
+                LogWrapper.severe(
+                        "The jar file {} has a security seal for path {}, but that path is defined and not secure",
+                        jarFile.getName(),
+                        packageName);
             }
-        } catch (IOException ex) {
-            LogWrapper.log(Level.WARN, ex, "Could not save transformed class \"" + transformedName + "\"");
         }
+        return signers;
     }
 
-    private String untransformName(final String name) {
-        if (renameTransformer != null) {
-            return renameTransformer.unmapClassName(name);
+    private byte[] transformClass(final String untransformedName, final String transformedName) throws IOException {
+        final byte[] basicClass = getClassBytes(untransformedName);
+        if (prebakedClasses != null && basicClass != null && !transformers.isEmpty()) {
+            final byte[] prebaked = prebakedClasses.get(transformers, sources, transformedName, basicClass);
+            if (prebaked != null) {
+                if (DEBUG) LogWrapper.finest("Loaded transformed class {} from the prebaked classes", transformedName);
+                return prebaked;
+            }
+        }
+        final TransformedClassCache cache = getTransformCache();
+        if (cache == null || basicClass == null || transformers.isEmpty()) {
+            return runTransformers(untransformedName, transformedName, basicClass);
+        }
+
+        final String fingerprint = cache.fingerprint(transformers, sources);
+        final byte[] inputHash = TransformedClassCache.hash(basicClass);
+        final byte[] cached = cache.get(fingerprint, transformedName, inputHash);
+        if (cached != null) {
+            if (DEBUG) LogWrapper.finest("Loaded transformed class {} from the transform cache", transformedName);
+            return cached;
+        }
+
+        final byte[] transformedClass = runTransformers(untransformedName, transformedName, basicClass);
+        if (transformedClass != null) {
+            cache.put(fingerprint, transformedName, inputHash, transformedClass);
+        }
+        return transformedClass;
+    }
+
+    private TransformedClassCache getTransformCache() {
+        if (!TRANSFORM_CACHE) {
+            return null;
+        }
+        TransformedClassCache cache = transformCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = transformCache;
+                if (cache == null) {
+                    final File directory = new File(getCacheDirectory(), "transformed");
+                    LogWrapper.info("Transform cache enabled, using \"{}\"", directory.getAbsolutePath());
+                    transformCache = cache = new TransformedClassCache(directory);
+                }
+            }
+        }
+        return cache;
+    }
+
+    static File getCacheDirectory() {
+        final String directory = System.getProperty("legacy.cacheDirectory");
+        return directory != null ? new File(directory) : new File(Launch.minecraftHome, "launchwrapper_cache");
+    }
+
+    private void saveTransformedClass(final byte[] data, final String transformedName) {
+        if (tempFolder == null || data == null || transformedName == null) {
+            return;
+        }
+
+        dumpWriter.save(transformedName, data);
+    }
+
+    String untransformName(final String name) {
+        final IClassNameTransformer renamer = renameTransformer;
+        if (renamer != null) {
+            return ClassNameCache.isEnabledFor(renamer)
+                    ? getClassNameCache(renamer).unmap(name)
+                    : renamer.unmapClassName(name);
         }
 
         return name;
     }
 
-    private String transformName(final String name) {
-        if (renameTransformer != null) {
-            return renameTransformer.remapClassName(name);
+    String transformName(final String name) {
+        final IClassNameTransformer renamer = renameTransformer;
+        if (renamer != null) {
+            return ClassNameCache.isEnabledFor(renamer)
+                    ? getClassNameCache(renamer).remap(name)
+                    : renamer.remapClassName(name);
         }
 
         return name;
     }
 
+    /** The memo for the given rename transformer, replaced when renameTransformer is swapped for another one. */
+    private ClassNameCache getClassNameCache(final IClassNameTransformer renamer) {
+        ClassNameCache cache = classNameCache;
+        if (cache == null || cache.renamer != renamer) {
+            cache = new ClassNameCache(renamer);
+            classNameCache = cache;
+        }
+        return cache;
+    }
+
     private boolean isSealed(final String path, final Manifest manifest) {
         Attributes attributes = manifest.getAttributes(path);
         String sealed = null;
@@ -390,51 +743,35 @@ public class LaunchClassLoader extends URLClassLoader {
         return null;
     }
 
-    private static byte[] EMPTY_BYTE_ARRAY = new byte[0];
-
-    private byte[] runTransformers(final String name, final String transformedName, byte[] basicClass) {
-        MessageDigest hashers = null;
-        if (DEBUG_SAVE) {
-            try {
-                hashers = MessageDigest.getInstance("SHA-256");
-            } catch (Exception e) {
-                // no-op
-            }
+    byte[] runTransformers(final String name, final String transformedName, byte[] basicClass) {
+        final Object headerScope = ClassHeader.enter(basicClass);
+        try {
+            return runRoutedTransformers(name, transformedName, basicClass);
+        } finally {
+            ClassHeader.exit(headerScope);
         }
-        if (DEBUG_FINER) {
-            byte[] preTransformHash = EMPTY_BYTE_ARRAY;
-            if (hashers != null && basicClass != null) {
-                preTransformHash = hashers.digest(basicClass);
+    }
+
+    private byte[] runRoutedTransformers(final String name, final String transformedName, byte[] basicClass) {
+        final IClassTransformer[] routed = getTransformerDispatch().route(name, transformedName);
+        if (DEBUG_FINER && DEBUG_SAVE) {
+            // Dump the class after every transformer that changes it; timings are reported by the profiler
+            long preTransformChecksum = -1L;
+            if (basicClass != null) {
+                preTransformChecksum = ClassDumpWriter.checksum(basicClass);
                 if (!DEBUG_SLIM || (transformers != null && !transformers.isEmpty())) {
                     saveTransformedClass(basicClass, transformedName + "_000_pretransform");
                 }
             }
-            LogWrapper.finest(
-                    "Beginning transform of [{} ({})] Start Length: {}",
-                    name,
-                    transformedName,
-                    (basicClass == null ? 0 : basicClass.length));
             int transformerId = 1;
-            for (final IClassTransformer transformer : transformers) {
+            for (final IClassTransformer transformer : routed) {
                 final String transName = transformer.getClass().getName();
-                LogWrapper.finest(
-                        "Before Transformer [{} ({})] {}: {}",
-                        name,
-                        transformedName,
-                        transName,
-                        (basicClass == null ? 0 : basicClass.length));
-                basicClass = transformer.transform(name, transformedName, basicClass);
-                LogWrapper.finest(
-                        "After  Transformer [{} ({})] {}: {}",
-                        name,
-                        transformedName,
-                        transName,
-                        (basicClass == null ? 0 : basicClass.length));
-                if (hashers != null && basicClass != null) {
-                    hashers.reset();
-                    byte[] postTransformHash = hashers.digest(basicClass);
-                    if (!Arrays.equals(preTransformHash, postTransformHash)) {
-                        preTransformHash = postTransformHash;
+                basicClass = TransformerChain.run(
+                        new IClassTransformer[] {transformer}, name, transformedName, basicClass, profiler);
+                if (basicClass != null) {
+                    final long postTransformChecksum = ClassDumpWriter.checksum(basicClass);
+                    if (postTransformChecksum != preTransformChecksum) {
+                        preTransformChecksum = postTransformChecksum;
                         saveTransformedClass(
                                 basicClass,
                                 transformedName
@@ -443,19 +780,12 @@ public class LaunchClassLoader extends URLClassLoader {
                 }
                 transformerId++;
             }
-            LogWrapper.finest(
-                    "Ending transform of [{} ({})] Start Length: {}",
-                    name,
-                    transformedName,
-                    (basicClass == null ? 0 : basicClass.length));
         } else {
             byte[] originalClass = null;
             if (DEBUG_SLIM) {
                 originalClass = Arrays.copyOf(basicClass, basicClass.length);
             }
-            for (final IClassTransformer transformer : transformers) {
-                basicClass = transformer.transform(name, transformedName, basicClass);
-            }
+            basicClass = TransformerChain.run(routed, name, transformedName, basicClass, profiler);
             if (DEBUG_SAVE) {
                 if (!DEBUG_SLIM || !Arrays.equals(originalClass, basicClass)) {
                     saveTransformedClass(basicClass, transformedName);
@@ -465,10 +795,262 @@ public class LaunchClassLoader extends URLClassLoader {
         return basicClass;
     }
 
+    /**
+     * Transforms every class of the indexed classpath that is not excluded, without defining any, and writes the
+     * results to the given archive for {@code legacy.prebakedClasses}. Called by Launch instead of launching the game.
+     */
+    void prebake(final File output) throws IOException, InterruptedException {
+        final List<String> names = new ArrayList<>();
+        for (final String entry : classPathIndex.classEntries()) {
+            final String name = entry.substring(0, entry.length() - ".class".length()).replace('/', '.');
+            if (classPathIndex.modeOf(entry) == ClassPathIndex.Mode.TRANSFORMED && !isExcluded(transformName(name))) {
+                names.add(name);
+            }
+        }
+        LogWrapper.info("Prebaking {} classes with {} transformers", names.size(), transformers.size());
+        PrebakedClasses.bake(this, names, output);
+    }
+
+    /** Reads the untransformed bytes of a class from the indexed classpath, bypassing the resource cache. */
+    byte[] readIndexedClass(final String name) {
+        final ClassPathIndex.Resource resource = classPathIndex.find(name.replace('.', '/').concat(".class"));
+        if (resource == null) {
+            return null;
+        }
+        try (InputStream stream = resource.openStream()) {
+            return readFully(stream, resource.getSize());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Writes the class loading profile, if profiling is enabled. Called by Launch once the launch target returns. */
+    void reportProfile() {
+        if (profiler != null) {
+            profiler.report("launch target return");
+        }
+    }
+
+    private TransformerDispatch getTransformerDispatch() {
+        final TransformerDispatch current = transformerDispatch;
+        final List<IClassTransformer> list = transformers;
+        // the list may have been replaced through reflection
+        final TransformerDispatch updated = current.update(
+                list instanceof TransformerList
+                        ? ((TransformerList) list).snapshot()
+                        : list.toArray(new IClassTransformer[0]));
+        if (updated != current) {
+            transformerDispatch = updated;
+        }
+        return updated;
+    }
+
     @Override
     public void addURL(final URL url) {
         super.addURL(url);
         sources.add(url);
+        classPathIndex.add(url);
+        // classes that were missing may be on the new source
+        negativeResourceCache.clear();
+        classHierarchy.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            classPathIndex.close();
+            final PluginIndex plugins = pluginIndex;
+            if (plugins != null) {
+                plugins.close();
+            }
+            if (prebakedClasses != null) {
+                prebakedClasses.close();
+            }
+            // the bean may still be registering, in which case the registering thread sees the flag instead
+            closed = true;
+            unregisterManagementBean(managementName);
+        }
+    }
+
+    /**
+     * Registers the {@link LaunchClassLoaderMXBean} on a background thread, since starting the platform MBean server
+     * takes long enough to show up in launch times. A loader closed before registration finishes unregisters it again.
+     */
+    private void registerManagementBean() {
+        final Thread thread = new Thread(
+                () -> {
+                    try {
+                        final ObjectName name = new ObjectName(MANAGEMENT_NAME_PREFIX
+                                + Integer.toHexString(System.identityHashCode(this)));
+                        ManagementFactory.getPlatformMBeanServer().registerMBean(new Management(), name);
+                        managementName = name;
+                        if (closed) {
+                            unregisterManagementBean(name);
+                        }
+                    } catch (Throwable t) {
+                        LogWrapper.log(Level.WARN, t, "Could not register the LaunchClassLoader MBean");
+                    }
+                },
+                "LaunchWrapper JMX registration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void unregisterManagementBean(final ObjectName name) {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException ignored) {
+                // already unregistered by close or the registering thread
+            }
+        }
+    }
+
+    /**
+     * Thrown for names already known to be missing when {@code legacy.cheapClassNotFound} is set. It has no stack
+     * trace, since filling one in costs far more than the lookup for mods that poll for optional classes. Setting
+     * {@code legacy.debugClassNotFound} brings full traces back without the rest of the class loading debug output;
+     * {@link RepeatedMisses} tells which names are polled.
+     */
+    private static final class KnownMissingClassException extends ClassNotFoundException {
+        private static final long serialVersionUID = 1L;
+
+        KnownMissingClassException(String name) {
+            super(name);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private final class Management implements LaunchClassLoaderMXBean {
+        @Override
+        public int getCachedClassCount() {
+            return cachedClasses.size();
+        }
+
+        @Override
+        public int getResourceCacheSize() {
+            return resourceCache.size();
+        }
+
+        @Override
+        public int getNegativeResourceCacheSize() {
+            return negativeResourceCache.size();
+        }
+
+        @Override
+        public int getInvalidClassCount() {
+            return invalidClasses.size();
+        }
+
+        @Override
+        public long getRetainedResourceBytes() {
+            long total = 0;
+            for (byte[] bytes : resourceCacheSnapshot().values()) {
+                total += bytes.length;
+            }
+            return total;
+        }
+
+        @Override
+        public Map<String, Long> getRetainedBytesBySource() {
+            final Map<String, Long> bySource = new TreeMap<>();
+            for (Map.Entry<String, byte[]> entry : resourceCacheSnapshot().entrySet()) {
+                final ClassPathIndex.Resource resource =
+                        classPathIndex.find(entry.getKey().replace('.', '/').concat(".class"));
+                final String source = resource != null ? resource.getSourceURL().toString() : "(not indexed)";
+                bySource.merge(source, (long) entry.getValue().length, Long::sum);
+            }
+            return bySource;
+        }
+
+        @Override
+        public long getClassesDefined() {
+            return statistics.classesDefined.sum();
+        }
+
+        @Override
+        public long getClassCacheHits() {
+            return statistics.classCacheHits.sum();
+        }
+
+        @Override
+        public long getResourceCacheHits() {
+            return statistics.resourceCacheHits.sum();
+        }
+
+        @Override
+        public long getResourceCacheMisses() {
+            return statistics.resourceCacheMisses.sum();
+        }
+
+        @Override
+        public long getNegativeResourceCacheHits() {
+            return statistics.negativeResourceCacheHits.sum();
+        }
+
+        @Override
+        public double getResourceCacheHitRate() {
+            final long hits = getResourceCacheHits();
+            final long total = hits + getResourceCacheMisses();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public Map<String, Long> getRepeatedMisses() {
+            return repeatedMisses.top(100);
+        }
+
+        @Override
+        public double getLoadLatencyP50Millis() {
+            return statistics.loadLatency.percentileMillis(0.5);
+        }
+
+        @Override
+        public double getLoadLatencyP90Millis() {
+            return statistics.loadLatency.percentileMillis(0.9);
+        }
+
+        @Override
+        public double getLoadLatencyP99Millis() {
+            return statistics.loadLatency.percentileMillis(0.99);
+        }
+
+        @Override
+        public double getLoadLatencyMaxMillis() {
+            return statistics.loadLatency.percentileMillis(1);
+        }
+
+        @Override
+        public void trimResourceCache() {
+            resourceCache.clear();
+        }
+
+        @Override
+        public void clearNegativeCaches() {
+            negativeResourceCache.clear();
+            invalidClasses.clear();
+            classHierarchy.clear();
+        }
+
+        @Override
+        public void resetStatistics() {
+            statistics.reset();
+            repeatedMisses.clear();
+        }
+
+        private Map<String, byte[]> resourceCacheSnapshot() {
+            final Map<String, byte[]> cache = resourceCache;
+            // the LRU policy uses a synchronized map, which must be locked while it is copied
+            synchronized (cache) {
+                return new HashMap<>(cache);
+            }
+        }
     }
 
     public List<URL> getSources() {
@@ -476,25 +1058,40 @@ public class LaunchClassLoader extends URLClassLoader {
     }
 
     private byte[] readFully(InputStream stream) {
+        return readFully(stream, -1);
+    }
+
+    /**
+     * Reads the stream straight into an array of the expected length when it is known, so the common case is a single
+     * exact-size allocation with no copying. Unknown or wrong lengths fall back to a doubling buffer.
+     */
+    private byte[] readFully(InputStream stream, int expectedLength) {
         try {
-            byte[] buffer = getOrCreateBuffer();
+            byte[] buffer = expectedLength >= 0 ? new byte[expectedLength] : getOrCreateBuffer();
 
             int read;
             int totalLength = 0;
-            while ((read = stream.read(buffer, totalLength, buffer.length - totalLength)) != -1) {
-                totalLength += read;
+            while (true) {
+                if (totalLength == buffer.length) {
+                    final int next = stream.read();
+                    if (next == -1) {
+                        break;
+                    }
 
-                // Extend our buffer
-                if (totalLength >= buffer.length - 1) {
-                    byte[] newBuffer = new byte[buffer.length + BUFFER_SIZE];
-                    System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
-                    buffer = newBuffer;
+                    // Extend our buffer
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, BUFFER_SIZE));
+                    buffer[totalLength++] = (byte) next;
                 }
+                if ((read = stream.read(buffer, totalLength, buffer.length - totalLength)) == -1) {
+                    break;
+                }
+                totalLength += read;
             }
 
-            final byte[] result = new byte[totalLength];
-            System.arraycopy(buffer, 0, result, 0, totalLength);
-            return result;
+            if (totalLength == buffer.length && buffer != loadBuffer.get()) {
+                return buffer;
+            }
+            return Arrays.copyOf(buffer, totalLength);
         } catch (Throwable t) {
             LogWrapper.log(Level.WARN, t, "Problem loading class");
             return new byte[0];
@@ -514,6 +1111,16 @@ public class LaunchClassLoader extends URLClassLoader {
         return Collections.unmodifiableList(transformers);
     }
 
+    /** The hierarchy of the classes this loader can see, read from class bytes without loading any of them. */
+    public ClassHierarchy getClassHierarchy() {
+        return classHierarchy;
+    }
+
+    /** Returns the class defined or cached under the given name, without loading it. */
+    Class<?> getCachedClass(String name) {
+        return cachedClasses.get(name);
+    }
+
     public void addClassLoaderExclusion(String toExclude) {
         classLoaderExceptions.add(toExclude);
     }
@@ -523,15 +1130,27 @@ public class LaunchClassLoader extends URLClassLoader {
     }
 
     public byte[] getClassBytes(String name) throws IOException {
+        return getClassBytes(name, true);
+    }
+
+    private byte[] getClassBytes(String name, boolean rememberMiss) throws IOException {
         if (negativeResourceCache.contains(name)) {
+            if (statistics != null) {
+                statistics.negativeResourceCacheHits.increment();
+            }
             return null;
-        } else if (resourceCache.containsKey(name)) {
-            return resourceCache.get(name);
+        }
+        final byte[] cached = resourceCache.get(name);
+        if (statistics != null) {
+            (cached != null ? statistics.resourceCacheHits : statistics.resourceCacheMisses).increment();
+        }
+        if (cached != null) {
+            return cached;
         }
         if (name.indexOf('.') == -1) {
             for (final String reservedName : RESERVED_NAMES) {
                 if (name.toUpperCase(Locale.ENGLISH).startsWith(reservedName)) {
-                    final byte[] data = getClassBytes("_" + name);
+                    final byte[] data = getClassBytes("_" + name, rememberMiss);
                     if (data != null) {
                         resourceCache.put(name, data);
                         return data;
@@ -543,37 +1162,52 @@ public class LaunchClassLoader extends URLClassLoader {
         InputStream classStream = null;
         try {
             final String resourcePath = name.replace('.', '/').concat(".class");
-            final URL classResource = findResource(resourcePath);
+            final ClassPathIndex.Resource resource = classPathIndex.find(resourcePath);
+            final URL classResource =
+                    resource != null || classPathIndex.isComplete() ? null : findResource(resourcePath);
 
-            if (classResource == null) {
+            if (resource == null && classResource == null) {
                 // HybridFix start - Scan plugins for mixin support
-                scanPlugins();
-                File pluginJar = pluginClass2JarMap.get(name);
-                if (pluginJar != null) {
-                    InputStream jarStream = null;
-                    try (JarFile jf = new JarFile(pluginJar)) {
-                        JarEntry entry = jf.getJarEntry(name.replace('.', '/') + ".class");
-                        if (entry != null) {
-                            jarStream = jf.getInputStream(entry);
-                            final byte[] data = readFully(jarStream);
-                            resourceCache.put(name, data);
-                            if (DEBUG) LogWrapper.log(Level.DEBUG, "Loaded plugin bytes for Mixin: %s from %s", name, pluginJar.getName());
-                            return data;
+                InputStream jarStream = null;
+                try {
+                    final JarFile jf = scanPlugins().getJarFile(name);
+                    final JarEntry entry = jf != null ? jf.getJarEntry(resourcePath) : null;
+                    if (entry != null) {
+                        final long start = profiler != null ? System.nanoTime() : 0L;
+                        jarStream = jf.getInputStream(entry);
+                        final byte[] data = readFully(jarStream, (int) entry.getSize());
+                        if (profiler != null) {
+                            profiler.read(new File(jf.getName()).toURI().toURL(), start, data.length);
                         }
-                    } catch (Exception ignored) {
-                    } finally {
-                        closeSilently(jarStream);
+                        resourceCache.put(name, data);
+                        if (DEBUG) LogWrapper.log(Level.DEBUG, "Loaded plugin bytes for Mixin: %s from %s", name, jf.getName());
+                        return data;
                     }
+                } catch (Exception ignored) {
+                } finally {
+                    closeSilently(jarStream);
                 }
                 // HybridFix end - Scan plugins for mixin support
                 if (DEBUG) LogWrapper.finest("Failed to find class resource {}", resourcePath);
-                negativeResourceCache.add(name);
+                // the index already answers "absent" from memory, only slower misses are worth remembering
+                if (rememberMiss && !classPathIndex.isInMemory()) {
+                    negativeResourceCache.add(name);
+                }
                 return null;
             }
-            classStream = classResource.openStream();
+            final long start = profiler != null ? System.nanoTime() : 0L;
+            classStream = resource != null ? resource.openStream() : classResource.openStream();
 
-            if (DEBUG) LogWrapper.finest("Loading class {} from resource {}", name, classResource.toString());
-            final byte[] data = readFully(classStream);
+            if (DEBUG) {
+                LogWrapper.finest(
+                        "Loading class {} from resource {}",
+                        name,
+                        (resource != null ? resource.getURL() : classResource).toString());
+            }
+            final byte[] data = readFully(classStream, resource != null ? resource.getSize() : -1);
+            if (profiler != null) {
+                profiler.read(resource != null ? resource.getSourceURL() : classResource, start, data.length);
+            }
             resourceCache.put(name, data);
             return data;
         } finally {
@@ -0,0 +1,56 @@
+package net.minecraft.launchwrapper;
+
+import java.util.Map;
+
+/**
+ * Management view of a {@link LaunchClassLoader}, registered with the platform MBean server as
+ * {@code net.minecraft.launchwrapper:type=LaunchClassLoader,name=<id>} when {@code legacy.jmx} is true.
+ */
+public interface LaunchClassLoaderMXBean {
+
+    int getCachedClassCount();
+
+    int getResourceCacheSize();
+
+    int getNegativeResourceCacheSize();
+
+    int getInvalidClassCount();
+
+    /** Total size of the raw class bytes currently held by the resource cache. */
+    long getRetainedResourceBytes();
+
+    /** Raw class bytes held by the resource cache, per classpath source. Walks the cache, so it is not free. */
+    Map<String, Long> getRetainedBytesBySource();
+
+    long getClassesDefined();
+
+    long getClassCacheHits();
+
+    long getResourceCacheHits();
+
+    long getResourceCacheMisses();
+
+    long getNegativeResourceCacheHits();
+
+    double getResourceCacheHitRate();
+
+    /** The 100 names looked up most often after they were already known to be missing, with their counts. */
+    Map<String, Long> getRepeatedMisses();
+
+    /** Latency of class loads that defined a class, including the loads they triggered, in milliseconds. */
+    double getLoadLatencyP50Millis();
+
+    double getLoadLatencyP90Millis();
+
+    double getLoadLatencyP99Millis();
+
+    double getLoadLatencyMaxMillis();
+
+    /** Drops every cached raw class; the bytes are re-read from the classpath when they are needed again. */
+    void trimResourceCache();
+
+    /** Forgets the resources and classes that were not found, so they are looked up again. */
+    void clearNegativeCaches();
+
+    void resetStatistics();
+}
@@ -0,0 +1,54 @@
+package net.minecraft.launchwrapper;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A ClassWriter that computes frames from a {@link ClassHierarchy} instead of loading classes, so
+ * {@link ClassWriter#COMPUTE_FRAMES} never defines a class or recurses into {@link LaunchClassLoader#findClass}. The
+ * single-argument constructors use the hierarchy of {@link Launch#classLoader}. ASM's class loading lookup is used when
+ * there is no hierarchy or it cannot find one of the types, and throws if that cannot find it either.
+ */
+public class LaunchClassWriter extends ClassWriter {
+    private final ClassHierarchy hierarchy;
+
+    public LaunchClassWriter(int flags) {
+        this(defaultHierarchy(), flags);
+    }
+
+    public LaunchClassWriter(ClassReader classReader, int flags) {
+        this(defaultHierarchy(), classReader, flags);
+    }
+
+    public LaunchClassWriter(ClassHierarchy hierarchy, int flags) {
+        super(flags);
+        this.hierarchy = hierarchy;
+    }
+
+    public LaunchClassWriter(ClassHierarchy hierarchy, ClassReader classReader, int flags) {
+        super(classReader, flags);
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        if (hierarchy == null) {
+            return super.getCommonSuperClass(type1, type2);
+        }
+        try {
+            return hierarchy.getCommonSuperClass(type1, type2);
+        } catch (TypeNotPresentException e) {
+            LogWrapper.fine(
+                    "Could not find the common superclass of {} and {} without loading classes: {}",
+                    type1,
+                    type2,
+                    e.getMessage());
+            return super.getCommonSuperClass(type1, type2);
+        }
+    }
+
+    private static ClassHierarchy defaultHierarchy() {
+        final LaunchClassLoader classLoader = Launch.classLoader;
+        return classLoader != null ? classLoader.getClassHierarchy() : null;
+    }
+}
@@ -0,0 +1,164 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class loading profiler enabled with {@code legacy.profileClassLoading} (or {@code legacy.debugClassLoadingFiner}).
+ * It accumulates time, calls and bytes per transformer and read time per classpath source, and writes a report sorted
+ * by cost, followed by the {@link RepeatedMisses} if they are counted, to the log and to
+ * {@code class-loading-profile.txt} in the cache directory when the launch target returns and again when the JVM
+ * shuts down. When disabled the loader holds no profiler and pays a single null check.
+ */
+final class LoadProfiler {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("legacy.profileClassLoading", "false"));
+    /** Pseudo transformer charged with parsing and writing the ClassNode shared by node transformers. */
+    private static final String SHARED_NODE = "(shared ClassNode read/write)";
+
+    private final Map<String, Stats> transformers = new ConcurrentHashMap<>();
+    private final Map<String, Stats> sources = new ConcurrentHashMap<>();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder classesDefined = new LongAdder();
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+    private final long created = System.nanoTime();
+    private final RepeatedMisses repeatedMisses;
+
+    /** Creates a profiler whose report includes the given repeated misses, unless they are null. */
+    LoadProfiler(RepeatedMisses repeatedMisses) {
+        this.repeatedMisses = repeatedMisses;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> report("shutdown"), "LaunchWrapper profile writer"));
+    }
+
+    /** Marks the start of a findClass call; only the outermost call on each thread is timed. */
+    long enterFindClass() {
+        return depth.get()[0]++ == 0 ? System.nanoTime() : 0L;
+    }
+
+    void exitFindClass(long start) {
+        depth.get()[0]--;
+        if (start != 0L) {
+            loadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    void classDefined() {
+        classesDefined.increment();
+    }
+
+    /** Records one transformer call. A negative bytesOut means the output size is charged later by the chain. */
+    void transformed(IClassTransformer transformer, long start, int bytesIn, int bytesOut, boolean changed) {
+        final Stats stats = stats(transformers, transformer.getClass().getName());
+        stats.nanos.add(System.nanoTime() - start);
+        stats.calls.increment();
+        stats.bytesIn.add(bytesIn);
+        if (bytesOut >= 0) {
+            stats.bytesOut.add(bytesOut);
+        }
+        if (changed) {
+            stats.changed.increment();
+        }
+    }
+
+    /** Charges a shared ClassNode's parse and write time, and the size it was written at, to its transformers. */
+    void nodeWritten(IClassTransformer[] group, int from, int to, long nanos, int bytesIn, int bytesOut) {
+        for (int i = from; i < to; i++) {
+            stats(transformers, group[i].getClass().getName()).bytesOut.add(bytesOut);
+        }
+        final Stats stats = stats(transformers, SHARED_NODE);
+        stats.nanos.add(nanos);
+        stats.calls.increment();
+        stats.bytesIn.add(bytesIn);
+        stats.bytesOut.add(bytesOut);
+        if (bytesOut != bytesIn) {
+            stats.changed.increment();
+        }
+    }
+
+    void read(URL source, long start, int bytes) {
+        final Stats stats = stats(sources, sourceOf(source));
+        stats.nanos.add(System.nanoTime() - start);
+        stats.calls.increment();
+        stats.bytesIn.add(bytes);
+    }
+
+    synchronized void report(String when) {
+        final StringWriter buffer = new StringWriter();
+        final PrintWriter out = new PrintWriter(buffer);
+        out.printf(
+                "Class loading profile at %s: %d classes defined, %.1f ms in findClass, %.1f ms since the loader was"
+                        + " created%n",
+                when, classesDefined.sum(), millis(loadNanos.sum()), millis(System.nanoTime() - created));
+        out.printf("%n%10s %8s %8s %12s %12s  %s%n", "ms", "calls", "changed", "bytes in", "bytes out", "transformer");
+        for (Map.Entry<String, Stats> entry : sorted(transformers)) {
+            final Stats stats = entry.getValue();
+            out.printf(
+                    "%10.1f %8d %8d %12d %12d  %s%n",
+                    millis(stats.nanos.sum()),
+                    stats.calls.sum(),
+                    stats.changed.sum(),
+                    stats.bytesIn.sum(),
+                    stats.bytesOut.sum(),
+                    entry.getKey());
+        }
+        out.printf("%n%10s %8s %12s  %s%n", "ms", "reads", "bytes", "source");
+        for (Map.Entry<String, Stats> entry : sorted(sources)) {
+            final Stats stats = entry.getValue();
+            out.printf(
+                    "%10.1f %8d %12d  %s%n",
+                    millis(stats.nanos.sum()), stats.calls.sum(), stats.bytesIn.sum(), entry.getKey());
+        }
+        if (repeatedMisses != null) {
+            repeatedMisses.report(out);
+        }
+        out.flush();
+
+        final String report = buffer.toString();
+        LogWrapper.info("{}", report);
+        final File file = new File(LaunchClassLoader.getCacheDirectory(), "class-loading-profile.txt");
+        try {
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), report.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LogWrapper.warning("Could not write class loading profile to {}: {}", file, e);
+        }
+    }
+
+    private static List<Map.Entry<String, Stats>> sorted(Map<String, Stats> map) {
+        final List<Map.Entry<String, Stats>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Stats> entry) -> entry.getValue().nanos.sum())
+                .reversed());
+        return entries;
+    }
+
+    private static Stats stats(Map<String, Stats> map, String key) {
+        final Stats stats = map.get(key);
+        return stats != null ? stats : map.computeIfAbsent(key, k -> new Stats());
+    }
+
+    /** Reduces jar: and file: resource URLs to the classpath entry that provided them. */
+    private static String sourceOf(URL url) {
+        final String form = url.toExternalForm();
+        final int separator = form.indexOf("!/");
+        if (form.startsWith("jar:") && separator != -1) {
+            return form.substring(4, separator);
+        }
+        return form;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Stats {
+        final LongAdder nanos = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder changed = new LongAdder();
+    }
+}
@@ -0,0 +1,88 @@
+package net.minecraft.launchwrapper;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LaunchClassLoader counters behind {@link LaunchClassLoaderMXBean}, kept when {@code legacy.jmx} is true. Every
+ * counter is a striped {@link LongAdder}, so recording from many loading threads does not contend on a shared cache
+ * line. Repeated misses per name are counted by {@link RepeatedMisses}, which is always enabled along with these.
+ */
+final class LoadStatistics {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("legacy.jmx", "false"));
+
+    final LongAdder classesDefined = new LongAdder();
+    final LongAdder classCacheHits = new LongAdder();
+    final LongAdder resourceCacheHits = new LongAdder();
+    final LongAdder resourceCacheMisses = new LongAdder();
+    final LongAdder negativeResourceCacheHits = new LongAdder();
+    final LatencyHistogram loadLatency = new LatencyHistogram();
+
+    void reset() {
+        classesDefined.reset();
+        classCacheHits.reset();
+        resourceCacheHits.reset();
+        resourceCacheMisses.reset();
+        negativeResourceCacheHits.reset();
+        loadLatency.reset();
+    }
+
+    /**
+     * Log-linear histogram of nanosecond latencies: every power of two is split into four buckets, so a percentile is
+     * accurate to within 25%.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKETS = 4;
+        private final LongAdder[] buckets = new LongAdder[64 * SUB_BUCKETS];
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[bucketOf(Math.max(nanos, 1L))].increment();
+        }
+
+        /** Returns the upper bound of the bucket holding the given percentile, in milliseconds, or 0 when empty. */
+        double percentileMillis(double percentile) {
+            final long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            final long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (counts[i] > 0 && seen >= rank) {
+                    return upperBoundOf(i) / 1_000_000.0;
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+
+        private static int bucketOf(long value) {
+            final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            if (magnitude < 2) {
+                return (int) value;
+            }
+            return magnitude * SUB_BUCKETS + (int) ((value >>> (magnitude - 2)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBoundOf(int bucket) {
+            final int magnitude = bucket / SUB_BUCKETS;
+            if (magnitude < 2) {
+                return bucket;
+            }
+            return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << (magnitude - 2)) - 1;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.apache.logging.log4j.Level;
+
+/**
+ * Index of the classes in the Bukkit plugin jars of the plugins directory, so that Mixin can read plugin classes
+ * through LaunchClassLoader. Jars are scanned in parallel, and the result is persisted in the cache directory and
+ * reused for every jar whose size and modification time are unchanged. Plugin jars stay open once read, so reading
+ * plugin classes does not reopen their jar every time.
+ */
+final class PluginIndex implements Closeable {
+    private static final int MAGIC = 0x4C575049; // LWPI
+    private static final int VERSION = 1;
+
+    /** Class name to the plugin jar providing it; the first jar in file name order wins. */
+    private final Map<String, File> classes = new HashMap<>();
+    private final ConcurrentMap<File, JarFile> openJars = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private PluginIndex() {}
+
+    /** Indexes the plugin jars of the given directory, using and refreshing the persisted index in the cache file. */
+    static PluginIndex scan(File directory, File cacheFile) {
+        final PluginIndex index = new PluginIndex();
+        final File[] jars = directory.listFiles(
+                (dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".jar") && new File(dir, name).isFile());
+        if (jars == null || jars.length == 0) {
+            return index;
+        }
+        Arrays.sort(jars);
+
+        final long start = System.nanoTime();
+        final Map<String, JarClasses> persisted = load(cacheFile);
+        final JarClasses[] scanned = new JarClasses[jars.length];
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < jars.length; i++) {
+            final JarClasses cached = persisted.get(jars[i].getAbsolutePath());
+            if (cached != null && cached.length == jars[i].length() && cached.lastModified == jars[i].lastModified()) {
+                scanned[i] = cached;
+                continue;
+            }
+            final int slot = i;
+            tasks.add(() -> {
+                scanned[slot] = index.scanJar(jars[slot]);
+                return null;
+            });
+        }
+        if (!tasks.isEmpty()) {
+            runInParallel(tasks);
+        }
+
+        for (JarClasses jar : scanned) {
+            if (jar != null) {
+                for (String className : jar.classes) {
+                    index.classes.putIfAbsent(className, jar.file);
+                }
+            }
+        }
+        if (!tasks.isEmpty()) {
+            save(cacheFile, scanned);
+        }
+        LogWrapper.fine(
+                "Indexed {} plugin classes from {} jars, {} rescanned, in {} ms",
+                index.classes.size(),
+                jars.length,
+                tasks.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+
+    boolean contains(String className) {
+        return classes.containsKey(className);
+    }
+
+    /** Returns the open plugin jar providing the given class, opening it on first use, or null if no plugin does. */
+    JarFile getJarFile(String className) throws IOException {
+        final File file = classes.get(className);
+        if (file == null) {
+            return null;
+        }
+        JarFile jar = openJars.get(file);
+        if (jar == null) {
+            if (closed) {
+                throw new IOException("Plugin index is closed");
+            }
+            final JarFile opened = new JarFile(file);
+            jar = openJars.putIfAbsent(file, opened);
+            if (jar == null) {
+                jar = opened;
+            } else {
+                opened.close();
+            }
+        }
+        return jar;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Iterator<JarFile> it = openJars.values().iterator(); it.hasNext(); ) {
+            try {
+                it.next().close();
+            } catch (IOException ignored) {
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Lists the classes of a jar, keeping it open for reading them if it is a plugin; a jar without a plugin.yml lists
+     * none. Returns null if the jar cannot be read, so it is scanned again next time.
+     */
+    private JarClasses scanJar(File file) {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final List<String> jarClasses = new ArrayList<>();
+        JarFile jar = null;
+        try {
+            jar = new JarFile(file);
+            if (jar.getEntry("plugin.yml") != null) {
+                final Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    final String path = entries.nextElement().getName();
+                    if (path.endsWith(".class")) {
+                        jarClasses.add(path.substring(0, path.length() - 6).replace('/', '.'));
+                    }
+                }
+                openJars.put(file, jar);
+                jar = null;
+            }
+        } catch (IOException e) {
+            LogWrapper.log(Level.WARN, e, "Could not index plugin jar " + file);
+            return null;
+        } finally {
+            if (jar != null) {
+                try {
+                    jar.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return new JarClasses(file, length, lastModified, jarClasses);
+    }
+
+    private static void runInParallel(List<Callable<Void>> tasks) {
+        final int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception ignored) {
+                }
+            }
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread thread = new Thread(r, "LaunchWrapper plugin indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, JarClasses> load(File cacheFile) {
+        final Map<String, JarClasses> jars = new HashMap<>();
+        if (!cacheFile.isFile()) {
+            return jars;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return jars;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                final File file = new File(in.readUTF());
+                final long length = in.readLong();
+                final long lastModified = in.readLong();
+                final List<String> jarClasses = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; j--) {
+                    jarClasses.add(in.readUTF());
+                }
+                jars.put(file.getPath(), new JarClasses(file, length, lastModified, jarClasses));
+            }
+        } catch (IOException e) {
+            LogWrapper.warning("Could not read plugin index {}: {}", cacheFile, e);
+            jars.clear();
+        }
+        return jars;
+    }
+
+    private static void save(File cacheFile, JarClasses[] jars) {
+        final File temp = new File(cacheFile.getPath() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                int count = 0;
+                for (JarClasses jar : jars) {
+                    count += jar != null ? 1 : 0;
+                }
+                out.writeInt(count);
+                for (JarClasses jar : jars) {
+                    if (jar == null) {
+                        continue;
+                    }
+                    out.writeUTF(jar.file.getAbsolutePath());
+                    out.writeLong(jar.length);
+                    out.writeLong(jar.lastModified);
+                    out.writeInt(jar.classes.size());
+                    for (String className : jar.classes) {
+                        out.writeUTF(className);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LogWrapper.warning("Could not save plugin index {}: {}", cacheFile, e);
+        }
+    }
+
+    /** The classes of one jar, empty for a jar that is not a plugin, with the size and time they were read at. */
+    private static final class JarClasses {
+        final File file;
+        final long length;
+        final long lastModified;
+        final List<String> classes;
+
+        JarClasses(File file, long length, long lastModified, List<String> classes) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.classes = classes;
+        }
+    }
+}
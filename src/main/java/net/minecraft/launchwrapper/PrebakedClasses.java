@@ -0,0 +1,412 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.apache.logging.log4j.Level;
+
+/**
+ * Archive of classes transformed ahead of time by {@code Launch --prebake <file>}, which runs the tweakers and then
+ * every class of the classpath through the registered transformers without defining any of them. A launch with
+ * {@code legacy.prebakedClasses} pointing at the archive takes a class from it instead of transforming it, provided the
+ * transformer chain and classpath have the same {@link #contentKey content key} as when it was baked and the class
+ * bytes are unchanged. A class whose transformation depends on runtime state is left out: it is transformed twice while
+ * baking, and is excluded if the two results differ or a transformer throws.
+ */
+final class PrebakedClasses implements Closeable {
+    static final String ARCHIVE = System.getProperty("legacy.prebakedClasses");
+    private static final String INDEX = "META-INF/launchwrapper-prebake.idx";
+    private static final String EXCLUDED = "META-INF/launchwrapper-prebake-excluded.txt";
+    private static final int MAGIC = 0x4C575042; // LWPB
+    private static final int VERSION = 2;
+    /** Content hash of each classpath entry by URL, computed once since entries do not change while the game runs. */
+    private static final Map<String, String> SOURCE_HASHES = new ConcurrentHashMap<>();
+    private static final ClassValue<String> CLASS_FILE_HASHES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return classFileHash(type);
+        }
+    };
+
+    private final ZipFile archive;
+    private final String contentKey;
+    /** Transformed name to the hash of the untransformed bytes it was baked from. */
+    private final Map<String, Baked> classes;
+    /** The last transformer chain and classpath checked against the content key, and whether they matched. */
+    private volatile Check lastCheck = new Check(new Object[0], new Object[0], false);
+    private volatile boolean reportedMismatch;
+    private volatile boolean reportedMatch;
+
+    private PrebakedClasses(ZipFile archive, String contentKey, Map<String, Baked> classes) {
+        this.archive = archive;
+        this.contentKey = contentKey;
+        this.classes = classes;
+    }
+
+    /** Opens the archive, or returns null if it cannot be read. */
+    static PrebakedClasses open(File file) {
+        ZipFile archive = null;
+        try {
+            archive = new ZipFile(file);
+            final ZipEntry index = archive.getEntry(INDEX);
+            if (index == null) {
+                throw new IOException("Missing " + INDEX);
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(archive.getInputStream(index)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Bad header");
+                }
+                final String contentKey = in.readUTF();
+                final int count = in.readInt();
+                final Map<String, Baked> classes = new HashMap<>(count * 4 / 3 + 1);
+                for (int i = 0; i < count; i++) {
+                    final String transformedName = in.readUTF();
+                    final byte[] inputHash = new byte[in.readUnsignedShort()];
+                    in.readFully(inputHash);
+                    classes.put(transformedName, new Baked(inputHash, in.readBoolean()));
+                }
+                LogWrapper.info("Using {} prebaked classes from \"{}\"", count, file.getAbsolutePath());
+                return new PrebakedClasses(archive, contentKey, classes);
+            }
+        } catch (IOException e) {
+            LogWrapper.log(Level.WARN, e, "Could not open prebaked classes " + file);
+            if (archive != null) {
+                try {
+                    archive.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the prebaked bytes of a class, or null if it was not baked, was baked from other bytes, or the given
+     * transformer chain and classpath are not the ones it was baked with.
+     */
+    byte[] get(List<IClassTransformer> transformers, List<URL> classpath, String transformedName, byte[] basicClass) {
+        final Baked baked = classes.get(transformedName);
+        if (baked == null || !matches(transformers, classpath)) {
+            return null;
+        }
+        if (!Arrays.equals(baked.inputHash, TransformedClassCache.hash(basicClass))) {
+            return null;
+        }
+        if (baked.unchanged) {
+            return basicClass;
+        }
+        try {
+            final ZipEntry entry = archive.getEntry(entryName(transformedName));
+            if (entry != null) {
+                try (InputStream in = archive.getInputStream(entry)) {
+                    return readAll(in, (int) entry.getSize());
+                }
+            }
+        } catch (IOException e) {
+            LogWrapper.log(Level.DEBUG, "Could not read prebaked class {} ({})", transformedName, e.toString());
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    private boolean matches(List<IClassTransformer> transformers, List<URL> classpath) {
+        final Object[] currentTransformers = transformers.toArray();
+        final Object[] currentClasspath = classpath.toArray();
+        Check check = lastCheck;
+        if (!TransformedClassCache.sameElements(check.transformers, currentTransformers)
+                || !TransformedClassCache.sameElements(check.classpath, currentClasspath)) {
+            check = new Check(
+                    currentTransformers,
+                    currentClasspath,
+                    contentKey.equals(contentKey(currentTransformers, currentClasspath)));
+            lastCheck = check;
+            report(check);
+        }
+        return check.matches;
+    }
+
+    /** Logs the first mismatch, and the first match after it, since tweakers may register transformers late. */
+    private void report(Check check) {
+        if (!check.matches && !reportedMismatch) {
+            reportedMismatch = true;
+            LogWrapper.warning(
+                    "The prebaked classes in \"{}\" were baked with other transformers or another classpath than"
+                            + " the {} transformers and {} classpath entries in use now, and are not used until those"
+                            + " match",
+                    archive.getName(),
+                    check.transformers.length,
+                    check.classpath.length);
+        } else if (check.matches && reportedMismatch && !reportedMatch) {
+            reportedMatch = true;
+            LogWrapper.info(
+                    "The prebaked classes in \"{}\" match the transformers and classpath now", archive.getName());
+        }
+    }
+
+    /**
+     * Returns a key for a transformer chain and classpath that only depends on their contents: the class file of every
+     * transformer in order, and the entry names and CRCs of every classpath jar, or the files of every classpath
+     * directory, in any order. Paths and modification times are left out, so an archive baked by a build pipeline still
+     * matches on a server where the same modpack is installed somewhere else.
+     */
+    static String contentKey(Object[] transformers, Object[] classpath) {
+        final MessageDigest digest = TransformedClassCache.sha1();
+        for (Object transformer : transformers) {
+            final Class<?> clazz = transformer.getClass();
+            digest.update(clazz.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(CLASS_FILE_HASHES.get(clazz).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        digest.update((byte) 1);
+        // the order URLs are added in depends on tweaker discovery, not on what is on the classpath
+        final String[] hashes = new String[classpath.length];
+        for (int i = 0; i < classpath.length; i++) {
+            final URL url = (URL) classpath[i];
+            hashes[i] = url == null ? "" : SOURCE_HASHES.computeIfAbsent(url.toExternalForm(), key -> sourceHash(url));
+        }
+        Arrays.sort(hashes);
+        for (String hash : hashes) {
+            digest.update(hash.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return TransformedClassCache.toHex(digest.digest());
+    }
+
+    private static String classFileHash(Class<?> clazz) {
+        final String resourceName = clazz.getName().replace('.', '/').concat(".class");
+        final ClassLoader loader = clazz.getClassLoader();
+        try (InputStream in = loader == null
+                ? ClassLoader.getSystemResourceAsStream(resourceName)
+                : loader.getResourceAsStream(resourceName)) {
+            return in != null ? TransformedClassCache.toHex(TransformedClassCache.hash(readAll(in, -1))) : "?";
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    /** Hashes a jar's entry names and CRCs, or a directory's file names and contents, relative to the entry. */
+    private static String sourceHash(URL url) {
+        final File file;
+        try {
+            file = "file".equals(url.getProtocol()) ? new File(url.toURI()) : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return url.toExternalForm();
+        }
+        if (file == null) {
+            return url.toExternalForm();
+        }
+        final MessageDigest digest = TransformedClassCache.sha1();
+        try {
+            if (file.isDirectory()) {
+                final Path root = file.toPath();
+                final List<Path> files;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path path : files) {
+                    final String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+                    digest.update(name.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(Files.readAllBytes(path));
+                }
+            } else if (file.isFile()) {
+                try (ZipFile jar = new ZipFile(file)) {
+                    final List<? extends ZipEntry> entries = Collections.list(jar.entries());
+                    entries.sort(Comparator.comparing(ZipEntry::getName));
+                    for (ZipEntry entry : entries) {
+                        digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) 0);
+                        digest.update(Long.toHexString(entry.getCrc()).getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) 0);
+                    }
+                }
+            } else {
+                return "missing";
+            }
+        } catch (IOException e) {
+            LogWrapper.fine("Could not hash the contents of {} for the prebaked classes: {}", file, e);
+            return url.toExternalForm();
+        }
+        return TransformedClassCache.toHex(digest.digest());
+    }
+
+    /**
+     * Transforms the given untransformed class names on a fork-join pool and writes the results to the output archive.
+     * Nothing is defined; each class is transformed twice, and left out if the results differ or a transformer fails.
+     */
+    static void bake(LaunchClassLoader classLoader, List<String> names, File output)
+            throws IOException, InterruptedException {
+        final String contentKey =
+                contentKey(classLoader.getTransformers().toArray(), classLoader.getSources().toArray());
+        final long start = System.nanoTime();
+        output.getAbsoluteFile().getParentFile().mkdirs();
+        final File temp = new File(output.getPath() + ".tmp");
+        final Baker baker;
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+            baker = new Baker(classLoader, out);
+            final ForkJoinPool pool = new ForkJoinPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    p -> {
+                        final ForkJoinWorkerThread thread =
+                                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("LaunchWrapper prebake " + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        thread.setContextClassLoader(classLoader);
+                        return thread;
+                    },
+                    null,
+                    false);
+            try {
+                pool.submit(() -> names.parallelStream().forEach(baker::bake)).get();
+            } catch (ExecutionException e) {
+                throw new IOException("Could not write prebaked classes", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+
+            out.putNextEntry(new ZipEntry(INDEX));
+            final DataOutputStream index = new DataOutputStream(out);
+            index.writeInt(MAGIC);
+            index.writeInt(VERSION);
+            index.writeUTF(contentKey);
+            index.writeInt(baker.baked.size());
+            for (Map.Entry<String, Baked> entry : new TreeMap<>(baker.baked).entrySet()) {
+                index.writeUTF(entry.getKey());
+                index.writeShort(entry.getValue().inputHash.length);
+                index.write(entry.getValue().inputHash);
+                index.writeBoolean(entry.getValue().unchanged);
+            }
+            index.flush();
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry(EXCLUDED));
+            final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            for (String name : new TreeSet<>(baker.excluded)) {
+                writer.write(name);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.closeEntry();
+        }
+        Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        LogWrapper.info(
+                "Prebaked {} classes ({} unchanged by the transformers) and excluded {} into \"{}\" in {} ms",
+                baker.baked.size(),
+                baker.unchanged.get(),
+                baker.excluded.size(),
+                output.getAbsolutePath(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String entryName(String transformedName) {
+        return transformedName.replace('.', '/') + ".class";
+    }
+
+    private static byte[] readAll(InputStream in, int size) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(size > 0 ? size : 8192);
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Transforms one class at a time for {@link #bake}, from any number of pool threads. */
+    private static final class Baker {
+        final LaunchClassLoader classLoader;
+        final ZipOutputStream out;
+        final Map<String, Baked> baked = new ConcurrentHashMap<>();
+        final Set<String> excluded = ConcurrentHashMap.newKeySet();
+        final AtomicInteger unchanged = new AtomicInteger();
+
+        Baker(LaunchClassLoader classLoader, ZipOutputStream out) {
+            this.classLoader = classLoader;
+            this.out = out;
+        }
+
+        void bake(String name) {
+            final String transformedName = classLoader.transformName(name);
+            final byte[] basicClass = classLoader.readIndexedClass(name);
+            if (basicClass == null) {
+                return;
+            }
+            final byte[] first;
+            final byte[] second;
+            try {
+                first = classLoader.runTransformers(name, transformedName, basicClass.clone());
+                second = classLoader.runTransformers(name, transformedName, basicClass.clone());
+            } catch (Throwable t) {
+                LogWrapper.fine("Not prebaking {}, a transformer failed: {}", transformedName, t);
+                excluded.add(transformedName);
+                return;
+            }
+            if (first == null || !Arrays.equals(first, second)) {
+                LogWrapper.fine("Not prebaking {}, its transformation is not deterministic", transformedName);
+                excluded.add(transformedName);
+                return;
+            }
+            final boolean same = Arrays.equals(first, basicClass);
+            if (baked.putIfAbsent(transformedName, new Baked(TransformedClassCache.hash(basicClass), same)) != null) {
+                return;
+            }
+            if (same) {
+                unchanged.incrementAndGet();
+                return;
+            }
+            try {
+                synchronized (out) {
+                    out.putNextEntry(new ZipEntry(entryName(transformedName)));
+                    out.write(first);
+                    out.closeEntry();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class Check {
+        final Object[] transformers;
+        final Object[] classpath;
+        final boolean matches;
+
+        Check(Object[] transformers, Object[] classpath, boolean matches) {
+            this.transformers = transformers;
+            this.classpath = classpath;
+            this.matches = matches;
+        }
+    }
+
+    private static final class Baked {
+        final byte[] inputHash;
+        /** The transformers left the class as it was, so the archive holds no copy of it. */
+        final boolean unchanged;
+
+        Baked(byte[] inputHash, boolean unchanged) {
+            this.inputHash = inputHash;
+            this.unchanged = unchanged;
+        }
+    }
+}
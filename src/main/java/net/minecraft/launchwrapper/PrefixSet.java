@@ -0,0 +1,138 @@
+package net.minecraft.launchwrapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe set of name prefixes backed by a character trie, so checking whether a name starts with any of them
+ * costs at most one step per character of the name, however many prefixes there are. Lookups are lock-free; changes
+ * rebuild the trie, which is cheap for the few dozen exclusions a modpack registers.
+ */
+final class PrefixSet extends AbstractSet<String> {
+    private final Set<String> prefixes = ConcurrentHashMap.newKeySet();
+    private volatile Node root = Node.EMPTY;
+
+    /** Returns true if any element of this set is a prefix of the given name. */
+    boolean matchesPrefixOf(String name) {
+        Node node = root;
+        if (node.terminal) {
+            return true;
+        }
+        for (int i = 0, length = name.length(); i < length; i++) {
+            node = node.child(name.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(String prefix) {
+        if (prefixes.add(prefix)) {
+            rebuild();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object prefix) {
+        if (prefixes.remove(prefix)) {
+            rebuild();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        prefixes.clear();
+        rebuild();
+    }
+
+    @Override
+    public boolean contains(Object prefix) {
+        return prefixes.contains(prefix);
+    }
+
+    @Override
+    public int size() {
+        return prefixes.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        final Iterator<String> iterator = prefixes.iterator();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                rebuild();
+            }
+        };
+    }
+
+    private synchronized void rebuild() {
+        final Builder builder = new Builder();
+        for (String prefix : prefixes) {
+            Builder node = builder;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+            }
+            node.terminal = true;
+        }
+        root = builder.build();
+    }
+
+    private static final class Node {
+        static final Node EMPTY = new Node(false, new char[0], new Node[0]);
+
+        final boolean terminal;
+        final char[] keys;
+        final Node[] children;
+
+        Node(boolean terminal, char[] keys, Node[] children) {
+            this.terminal = terminal;
+            this.keys = keys;
+            this.children = children;
+        }
+
+        Node child(char c) {
+            final int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    private static final class Builder {
+        final TreeMap<Character, Builder> children = new TreeMap<>();
+        boolean terminal;
+
+        Node build() {
+            final char[] keys = new char[children.size()];
+            final Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                // a terminal node already matches, so nothing below it can change a lookup
+                nodes[i++] = entry.getValue().terminal
+                        ? new Node(true, new char[0], new Node[0])
+                        : entry.getValue().build();
+            }
+            return new Node(terminal, keys, nodes);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.minecraft.launchwrapper;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts, per class name, how often LaunchClassLoader is asked again for a class it already knows to be missing, so
+ * the mods polling for optional classes can be found. Enabled with {@code legacy.countRepeatedMisses}, which defaults
+ * to {@code legacy.cheapClassNotFound}, and whenever {@code legacy.jmx} is set. The most repeated names are part of the
+ * class loading profile, or logged on shutdown when there is no profiler.
+ */
+final class RepeatedMisses {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(
+            "legacy.countRepeatedMisses", System.getProperty("legacy.cheapClassNotFound", "false")));
+    private static final int REPORTED = 20;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /** Counts a lookup of a name that was already known to be missing. */
+    void record(String name) {
+        LongAdder count = counts.get(name);
+        if (count == null) {
+            if (counts.size() >= BoundedNameSet.DEFAULT_LIMIT) {
+                return;
+            }
+            count = counts.computeIfAbsent(name, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /** Returns the names looked up most often after they were known to be missing, most frequent first. */
+    Map<String, Long> top(int limit) {
+        final List<Map.Entry<String, Long>> sorted = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            sorted.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        final Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    void clear() {
+        counts.clear();
+    }
+
+    /** Appends the most repeated names to a report, or nothing if no name was looked up again. */
+    void report(PrintWriter out) {
+        final Map<String, Long> top = top(REPORTED);
+        if (top.isEmpty()) {
+            return;
+        }
+        out.printf("%n%10s  %s%n", "lookups", "class known to be missing");
+        for (Map.Entry<String, Long> entry : top.entrySet()) {
+            out.printf("%10d  %s%n", entry.getValue(), entry.getKey());
+        }
+    }
+
+    /** Logs the most repeated names when the JVM shuts down, for loaders without a profiler to report them. */
+    void reportOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::log, "LaunchWrapper repeated miss report"));
+    }
+
+    private void log() {
+        final StringWriter buffer = new StringWriter();
+        final PrintWriter out = new PrintWriter(buffer);
+        report(out);
+        out.flush();
+        if (buffer.getBuffer().length() > 0) {
+            LogWrapper.info("Classes looked up again after they were known to be missing:{}", buffer);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package net.minecraft.launchwrapper;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Retention policies for LaunchClassLoader's resourceCache, selected with {@code legacy.resourceCacheRetention}. Bytes
+ * evicted under any policy other than KEEP are transparently re-read from the classpath by getClassBytes.
+ */
+enum ResourceRetention {
+    /** Keep the raw bytes of every class for the life of the loader. */
+    KEEP,
+    /** Drop a class's raw bytes as soon as it has been defined. */
+    DROP,
+    /** Hold the raw bytes through soft references, letting the GC reclaim them under memory pressure. */
+    SOFT,
+    /** Keep the most recently used bytes up to {@code legacy.resourceCacheMaxBytes} in total. */
+    LRU;
+
+    private static final long LRU_MAX_BYTES = Long.getLong("legacy.resourceCacheMaxBytes", 64L << 20);
+
+    static ResourceRetention fromProperty() {
+        final String value = System.getProperty("legacy.resourceCacheRetention", "keep");
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LogWrapper.warning("Unknown resource cache retention policy {}, keeping all class bytes", value);
+            return KEEP;
+        }
+    }
+
+    Map<String, byte[]> createCache() {
+        switch (this) {
+            case SOFT:
+                return new SoftValueMap();
+            case LRU:
+                return Collections.synchronizedMap(new BoundedByteMap(LRU_MAX_BYTES));
+            default:
+                return new ConcurrentHashMap<>(1000);
+        }
+    }
+
+    private static final class SoftValueMap extends AbstractMap<String, byte[]> {
+        private final Map<String, Entry> map = new ConcurrentHashMap<>(1000);
+        private final ReferenceQueue<byte[]> queue = new ReferenceQueue<>();
+
+        @Override
+        public byte[] get(Object key) {
+            final Entry entry = map.get(key);
+            return entry == null ? null : entry.get();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public byte[] put(String key, byte[] value) {
+            expungeStaleEntries();
+            final Entry previous = map.put(key, new Entry(key, value, queue));
+            return previous == null ? null : previous.get();
+        }
+
+        @Override
+        public byte[] remove(Object key) {
+            final Entry previous = map.remove(key);
+            return previous == null ? null : previous.get();
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public int size() {
+            expungeStaleEntries();
+            return map.size();
+        }
+
+        /** A live view of the entries whose bytes are still reachable; removals and setValue write through. */
+        @Override
+        public Set<Map.Entry<String, byte[]>> entrySet() {
+            expungeStaleEntries();
+            return new AbstractSet<Map.Entry<String, byte[]>>() {
+                @Override
+                public Iterator<Map.Entry<String, byte[]>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return SoftValueMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    SoftValueMap.this.clear();
+                }
+            };
+        }
+
+        private void expungeStaleEntries() {
+            Entry entry;
+            while ((entry = (Entry) queue.poll()) != null) {
+                map.remove(entry.key, entry);
+            }
+        }
+
+        private final class EntryIterator implements Iterator<Map.Entry<String, byte[]>> {
+            private final Iterator<Entry> entries = map.values().iterator();
+            private Map.Entry<String, byte[]> next;
+            private String lastKey;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && entries.hasNext()) {
+                    final Entry entry = entries.next();
+                    final byte[] value = entry.get();
+                    if (value != null) {
+                        next = new SimpleEntry<String, byte[]>(entry.key, value) {
+                            @Override
+                            public byte[] setValue(byte[] value) {
+                                put(getKey(), value);
+                                return super.setValue(value);
+                            }
+                        };
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Map.Entry<String, byte[]> result = next;
+                next = null;
+                lastKey = result.getKey();
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                if (lastKey == null) {
+                    throw new IllegalStateException();
+                }
+                map.remove(lastKey);
+                lastKey = null;
+            }
+        }
+
+        private static final class Entry extends SoftReference<byte[]> {
+            final String key;
+
+            Entry(String key, byte[] value, ReferenceQueue<byte[]> queue) {
+                super(value, queue);
+                this.key = key;
+            }
+        }
+    }
+
+    /**
+     * An access-ordered map that evicts the least recently used bytes once their total exceeds the limit. Its views
+     * write through and keep the total; a value replaced through setValue is only evicted against on the next put.
+     */
+    private static final class BoundedByteMap extends AbstractMap<String, byte[]> {
+        private final Map<String, byte[]> map = new LinkedHashMap<>(1000, 0.75f, true);
+        private final long maxBytes;
+        private long totalBytes;
+
+        BoundedByteMap(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public byte[] get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public byte[] put(String key, byte[] value) {
+            final byte[] previous = map.put(key, value);
+            totalBytes += value.length - (previous == null ? 0 : previous.length);
+            final Iterator<byte[]> eldest = map.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                final byte[] evicted = eldest.next();
+                if (evicted == value) {
+                    break;
+                }
+                totalBytes -= evicted.length;
+                eldest.remove();
+            }
+            return previous;
+        }
+
+        @Override
+        public byte[] remove(Object key) {
+            final byte[] previous = map.remove(key);
+            if (previous != null) {
+                totalBytes -= previous.length;
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+            totalBytes = 0;
+        }
+
+        @Override
+        public Set<Map.Entry<String, byte[]>> entrySet() {
+            return new AbstractSet<Map.Entry<String, byte[]>>() {
+                @Override
+                public Iterator<Map.Entry<String, byte[]>> iterator() {
+                    final Iterator<Map.Entry<String, byte[]>> entries = map.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, byte[]>>() {
+                        private Map.Entry<String, byte[]> last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, byte[]> next() {
+                            final Map.Entry<String, byte[]> entry = entries.next();
+                            last = entry;
+                            return new SimpleEntry<String, byte[]>(entry) {
+                                @Override
+                                public byte[] setValue(byte[] value) {
+                                    // replacing a value does not change the access order, so iteration continues
+                                    final byte[] previous = entry.setValue(value);
+                                    totalBytes += value.length - previous.length;
+                                    return super.setValue(value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            entries.remove();
+                            totalBytes -= last.getValue().length;
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return map.size();
+                }
+
+                @Override
+                public void clear() {
+                    BoundedByteMap.this.clear();
+                }
+            };
+        }
+    }
+}
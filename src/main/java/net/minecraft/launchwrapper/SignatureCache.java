@@ -0,0 +1,198 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Timestamp;
+import java.security.cert.CertPath;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.apache.logging.log4j.Level;
+
+/**
+ * Opt-in cache of the verified code signers of signed jars, enabled with {@code legacy.signatureCache}. A jar is
+ * verified in full once; the signers of every entry are then stored keyed by the jar's path, size and modification
+ * time, and later launches open an unchanged jar without verification and take the signers from the cache. The jar's
+ * SHA-256 is stored too, and only computed when the size or modification time differ, so a jar that was merely touched
+ * or copied is not verified again. Leaving the property unset keeps the default of verifying every signed entry as it
+ * is read.
+ */
+final class SignatureCache {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("legacy.signatureCache", "false"));
+    private static final int MAGIC = 0x4C575343; // LWSC
+    private static final int VERSION = 1;
+    private static final String CERT_PATH_ENCODING = "PkiPath";
+
+    private SignatureCache() {}
+
+    /**
+     * Returns the signers of every signed entry of the jar, from the cache when the jar is unchanged and otherwise by
+     * verifying it in full and caching the result. Returns null if the jar fails verification or cannot be read.
+     */
+    static Map<String, CodeSigner[]> load(File jar) {
+        final File file = new File(new File(LaunchClassLoader.getCacheDirectory(), "signatures"), keyOf(jar) + ".bin");
+        try {
+            final Cached cached = read(file, jar);
+            if (cached != null && cached.size == jar.length() && cached.lastModified == jar.lastModified()) {
+                return cached.signers;
+            }
+            final byte[] contentHash = hash(jar);
+            if (cached != null && Arrays.equals(cached.contentHash, contentHash)) {
+                write(file, jar, contentHash, cached.signers);
+                return cached.signers;
+            }
+            final Map<String, CodeSigner[]> verified = verify(jar);
+            write(file, jar, contentHash, verified);
+            LogWrapper.fine("Verified signed jar {} and cached its signers", jar);
+            return verified;
+        } catch (IOException | GeneralSecurityException | SecurityException e) {
+            LogWrapper.log(Level.WARN, e, "Could not use the signature cache for " + jar);
+            return null;
+        }
+    }
+
+    private static Map<String, CodeSigner[]> verify(File jar) throws IOException {
+        final Map<String, CodeSigner[]> signers = new HashMap<>();
+        final byte[] buffer = new byte[8192];
+        try (JarFile jarFile = new JarFile(jar, true)) {
+            final Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                // reading an entry to its end is what verifies it against the signature
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    while (in.read(buffer) != -1) {}
+                }
+                final CodeSigner[] entrySigners = entry.getCodeSigners();
+                if (entrySigners != null) {
+                    signers.put(entry.getName(), entrySigners);
+                }
+            }
+        }
+        return signers;
+    }
+
+    /** Reads the cache entry of the given jar, whatever its stored size and modification time, or returns null. */
+    private static Cached read(File file, File jar) throws IOException, GeneralSecurityException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !jar.getAbsolutePath().equals(in.readUTF())) {
+                return null;
+            }
+            final long size = in.readLong();
+            final long lastModified = in.readLong();
+            final byte[] contentHash = readBytes(in);
+            final CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            final CodeSigner[][] signerSets = new CodeSigner[in.readInt()][];
+            for (int i = 0; i < signerSets.length; i++) {
+                signerSets[i] = new CodeSigner[in.readInt()];
+                for (int j = 0; j < signerSets[i].length; j++) {
+                    final CertPath certPath = readCertPath(in, factory);
+                    final Timestamp timestamp =
+                            in.readBoolean() ? new Timestamp(new Date(in.readLong()), readCertPath(in, factory)) : null;
+                    signerSets[i][j] = new CodeSigner(certPath, timestamp);
+                }
+            }
+            final Map<String, CodeSigner[]> signers = new HashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                signers.put(in.readUTF(), signerSets[in.readInt()]);
+            }
+            return new Cached(size, lastModified, contentHash, signers);
+        }
+    }
+
+    private static void write(File file, File jar, byte[] contentHash, Map<String, CodeSigner[]> signers)
+            throws IOException, CertificateException {
+        final Map<List<CodeSigner>, Integer> signerSets = new LinkedHashMap<>();
+        for (CodeSigner[] entrySigners : signers.values()) {
+            signerSets.putIfAbsent(Arrays.asList(entrySigners), signerSets.size());
+        }
+
+        file.getParentFile().mkdirs();
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(jar.getAbsolutePath());
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+            writeBytes(out, contentHash);
+            out.writeInt(signerSets.size());
+            for (List<CodeSigner> signerSet : signerSets.keySet()) {
+                out.writeInt(signerSet.size());
+                for (CodeSigner signer : signerSet) {
+                    writeBytes(out, signer.getSignerCertPath().getEncoded(CERT_PATH_ENCODING));
+                    final Timestamp timestamp = signer.getTimestamp();
+                    out.writeBoolean(timestamp != null);
+                    if (timestamp != null) {
+                        out.writeLong(timestamp.getTimestamp().getTime());
+                        writeBytes(out, timestamp.getSignerCertPath().getEncoded(CERT_PATH_ENCODING));
+                    }
+                }
+            }
+            out.writeInt(signers.size());
+            for (Map.Entry<String, CodeSigner[]> entry : signers.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(signerSets.get(Arrays.asList(entry.getValue())));
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static CertPath readCertPath(DataInputStream in, CertificateFactory factory) throws IOException,
+            CertificateException {
+        return factory.generateCertPath(new ByteArrayInputStream(readBytes(in)), CERT_PATH_ENCODING);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] hash(File jar) throws IOException, NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        final byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(jar)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static String keyOf(File jar) {
+        return Integer.toHexString(jar.getAbsolutePath().hashCode()) + "-" + jar.getName();
+    }
+
+    private static final class Cached {
+        final long size;
+        final long lastModified;
+        final byte[] contentHash;
+        final Map<String, CodeSigner[]> signers;
+
+        Cached(long size, long lastModified, byte[] contentHash, Map<String, CodeSigner[]> signers) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.signers = signers;
+        }
+    }
+}
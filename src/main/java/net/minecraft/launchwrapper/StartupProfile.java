@@ -0,0 +1,157 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Records the order in which classes are defined by LaunchClassLoader and replays it on the next launch, prefetching
+ * (and optionally pre-transforming) those classes on a background pool while the tweakers run. A profile written for
+ * a different classpath is ignored and simply re-recorded.
+ */
+final class StartupProfile {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("legacy.startupProfile", "false"));
+    static final boolean PRETRANSFORM =
+            ENABLED && Boolean.parseBoolean(System.getProperty("legacy.startupProfilePretransform", "false"));
+    private static final int LIMIT = Integer.getInteger("legacy.startupProfileLimit", 65536);
+    private static final String HEADER = "# launchwrapper startup profile v1 ";
+
+    private final Queue<String> recorded = new ConcurrentLinkedQueue<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger recordedCount = new AtomicInteger();
+    private final Map<String, Prepared> prepared = new ConcurrentHashMap<>();
+    private List<String> replay = Collections.emptyList();
+    private ForkJoinPool pool;
+    private File file;
+    private String classpathKey;
+
+    void record(String untransformedName) {
+        if (recordedCount.get() < LIMIT && seen.add(untransformedName)) {
+            recordedCount.incrementAndGet();
+            recorded.add(untransformedName);
+        }
+    }
+
+    /**
+     * Loads the profile recorded by a previous launch with the same classpath and arranges for the current one to be
+     * saved on shutdown. Returns the recorded class names, or an empty list.
+     */
+    synchronized List<String> load(File directory, List<URL> classpath) {
+        if (file != null) {
+            return replay;
+        }
+        file = new File(directory, "startup-profile.txt");
+        classpathKey = Integer.toHexString(classpath.toString().hashCode());
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "LaunchWrapper startup profile writer"));
+
+        if (!file.isFile()) {
+            LogWrapper.fine("No startup profile at {}, recording a new one", file);
+            return replay;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!(HEADER + classpathKey).equals(reader.readLine())) {
+                LogWrapper.fine("Startup profile {} was recorded for a different classpath, ignoring it", file);
+                return replay;
+            }
+            final List<String> names = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+            replay = names;
+            LogWrapper.info("Loaded startup profile with {} classes", names.size());
+        } catch (IOException e) {
+            LogWrapper.warning("Could not read startup profile {}: {}", file, e);
+        }
+        return replay;
+    }
+
+    /** Runs the given task for every name on a daemon pool whose threads use the given context class loader. */
+    synchronized void submit(List<String> names, ClassLoader contextLoader, Consumer<String> task) {
+        if (names.isEmpty()) {
+            return;
+        }
+        if (pool == null) {
+            final int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            pool = new ForkJoinPool(
+                    parallelism,
+                    p -> {
+                        final ForkJoinWorkerThread thread =
+                                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("LaunchWrapper warm-up " + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        thread.setContextClassLoader(contextLoader);
+                        return thread;
+                    },
+                    null,
+                    true);
+        }
+        for (String name : names) {
+            pool.execute(() -> task.accept(name));
+        }
+    }
+
+    List<String> getReplay() {
+        return replay;
+    }
+
+    boolean isPrepared(String transformedName) {
+        return prepared.containsKey(transformedName);
+    }
+
+    /** Stores pre-transformed bytes. Called under the class loading lock of the class, like {@link #take}. */
+    void prepare(String transformedName, Object transformerState, byte[] transformedClass) {
+        prepared.put(transformedName, new Prepared(transformerState, transformedClass));
+    }
+
+    /**
+     * Removes and returns the pre-transformed bytes for a class, provided they were produced by the same transformer
+     * chain that is registered now. Returns null otherwise.
+     */
+    byte[] take(String transformedName, Object transformerState) {
+        final Prepared value = prepared.remove(transformedName);
+        if (value != null && value.transformerState == transformerState) {
+            return value.transformedClass;
+        }
+        return null;
+    }
+
+    private void save() {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(HEADER + classpathKey);
+                writer.write('\n');
+                for (String name : recorded) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            temp.delete();
+        }
+    }
+
+    private static final class Prepared {
+        final Object transformerState;
+        final byte[] transformedClass;
+
+        Prepared(Object transformerState, byte[] transformedClass) {
+            this.transformerState = transformerState;
+            this.transformedClass = transformedClass;
+        }
+    }
+}
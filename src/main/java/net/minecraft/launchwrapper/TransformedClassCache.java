@@ -0,0 +1,304 @@
+package net.minecraft.launchwrapper;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.Level;
+
+/**
+ * On-disk cache of post-transformer class bytes, keyed by the untransformed bytes' hash, the transformed name and a
+ * fingerprint of the registered transformer chain and the classpath. Entries are written in the background and any
+ * entry that fails validation on read is deleted and treated as a miss.
+ */
+final class TransformedClassCache {
+    private static final int MAGIC = 0x4C575443; // LWTC
+    private static final int VERSION = 1;
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(
+            Long.getLong("legacy.transformCacheMaxAgeDays", 14L));
+
+    private final File root;
+    private final ExecutorService writer;
+    private final Set<String> touchedFingerprints = ConcurrentHashMap.newKeySet();
+    private volatile Fingerprint lastFingerprint = new Fingerprint(new Object[0], new Object[0], "");
+
+    TransformedClassCache(File root) {
+        this.root = root;
+        this.writer = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(4096),
+                r -> {
+                    final Thread thread = new Thread(r, "LaunchWrapper transform cache writer");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        root.mkdirs();
+        writer.execute(this::pruneStale);
+    }
+
+    /** Returns the cached transformed bytes, or null on a miss or an invalid entry. */
+    byte[] get(String fingerprint, String transformedName, byte[] inputHash) {
+        final File file = entryFile(fingerprint, transformedName, inputHash);
+        if (!file.isFile()) {
+            return null;
+        }
+        touch(file.getParentFile());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Bad header");
+            }
+            if (!fingerprint.equals(in.readUTF()) || !transformedName.equals(in.readUTF())) {
+                throw new IOException("Key mismatch");
+            }
+            final byte[] storedHash = new byte[in.readUnsignedShort()];
+            in.readFully(storedHash);
+            if (!Arrays.equals(storedHash, inputHash)) {
+                throw new IOException("Key mismatch");
+            }
+            final int length = in.readInt();
+            final long crc = in.readLong();
+            // checked before allocating, so a corrupt length cannot ask for more memory than the file could hold;
+            // available() is what is left of the file, buffered or not
+            if (length < 0 || length != in.available()) {
+                throw new IOException("Bad payload length " + length);
+            }
+            final byte[] data = new byte[length];
+            in.readFully(data);
+            if (in.read() != -1 || crc(data) != crc) {
+                throw new IOException("Corrupt payload");
+            }
+            return data;
+        } catch (IOException | RuntimeException e) {
+            LogWrapper.log(Level.DEBUG, "Discarding invalid transform cache entry {} ({})", file, e.toString());
+            file.delete();
+            return null;
+        }
+    }
+
+    void put(String fingerprint, String transformedName, byte[] inputHash, byte[] transformed) {
+        writer.execute(() -> write(fingerprint, transformedName, inputHash, transformed));
+    }
+
+    private void write(String fingerprint, String transformedName, byte[] inputHash, byte[] transformed) {
+        final File file = entryFile(fingerprint, transformedName, inputHash);
+        final File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File temp = null;
+        try {
+            // unique per writer, since several launches may share the cache directory
+            temp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp").toFile();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeUTF(transformedName);
+                out.writeShort(inputHash.length);
+                out.write(inputHash);
+                out.writeInt(transformed.length);
+                out.writeLong(crc(transformed));
+                out.write(transformed);
+            }
+            try {
+                Files.move(
+                        temp.toPath(),
+                        file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LogWrapper.log(Level.DEBUG, "Could not write transform cache entry for {} ({})", transformedName, e);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns a fingerprint of the given transformer chain and classpath, covering each transformer's class name and
+     * the identity of the class file it was loaded from, and the size and modification time of every classpath entry,
+     * since transformers read their configuration from the mods on it. Recomputed only when either list changes.
+     */
+    String fingerprint(List<IClassTransformer> transformers, List<URL> classpath) {
+        final Object[] currentTransformers = transformers.toArray();
+        final Object[] currentClasspath = classpath.toArray();
+        Fingerprint cached = lastFingerprint;
+        if (sameElements(cached.transformers, currentTransformers)
+                && sameElements(cached.classpath, currentClasspath)) {
+            return cached.value;
+        }
+        cached = new Fingerprint(
+                currentTransformers, currentClasspath, fingerprintOf(currentTransformers, currentClasspath));
+        lastFingerprint = cached;
+        return cached.value;
+    }
+
+    private static String fingerprintOf(Object[] transformers, Object[] classpath) {
+        final MessageDigest digest = sha1();
+        for (Object transformer : transformers) {
+            final Class<?> clazz = transformer.getClass();
+            digest.update(clazz.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(classFileStamp(clazz).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        digest.update((byte) 1);
+        // the order URLs are added in depends on tweaker discovery, not on what is on the classpath
+        final String[] stamps = new String[classpath.length];
+        for (int i = 0; i < classpath.length; i++) {
+            stamps[i] = sourceStamp((URL) classpath[i]);
+        }
+        Arrays.sort(stamps);
+        for (String stamp : stamps) {
+            digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    static boolean sameElements(Object[] a, Object[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static byte[] hash(byte[] data) {
+        return sha1().digest(data);
+    }
+
+    private static String classFileStamp(Class<?> clazz) {
+        final ClassLoader loader = clazz.getClassLoader();
+        final String resourceName = clazz.getName().replace('.', '/').concat(".class");
+        final URL resource =
+                loader == null ? ClassLoader.getSystemResource(resourceName) : loader.getResource(resourceName);
+        if (resource == null) {
+            return "?";
+        }
+        try {
+            final URLConnection connection = resource.openConnection();
+            if (connection instanceof JarURLConnection) {
+                final JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+                return resource + "|" + entry.getSize() + "|" + entry.getCrc();
+            }
+            try {
+                return resource + "|" + connection.getContentLengthLong() + "|" + connection.getLastModified();
+            } finally {
+                connection.getInputStream().close();
+            }
+        } catch (IOException e) {
+            return resource.toString();
+        }
+    }
+
+    private static String sourceStamp(URL url) {
+        if (url == null) {
+            return "";
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                final File file = new File(url.toURI());
+                return url + "|" + file.length() + "|" + file.lastModified();
+            } catch (URISyntaxException | IllegalArgumentException ignored) {
+            }
+        }
+        return url.toString();
+    }
+
+    private File entryFile(String fingerprint, String transformedName, byte[] inputHash) {
+        final MessageDigest digest = sha1();
+        digest.update(transformedName.getBytes(StandardCharsets.UTF_8));
+        digest.update(inputHash);
+        final String key = toHex(digest.digest());
+        return new File(new File(new File(root, fingerprint), key.substring(0, 2)), key);
+    }
+
+    private void touch(File bucket) {
+        final File dir = bucket.getParentFile();
+        if (touchedFingerprints.add(dir.getName())) {
+            dir.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    private void pruneStale() {
+        final File[] dirs = root.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        final long cutoff = System.currentTimeMillis() - MAX_AGE_MILLIS;
+        for (File dir : dirs) {
+            if (dir.lastModified() < cutoff) {
+                LogWrapper.fine("Pruning stale transform cache {}", dir.getName());
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static long crc(byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] data) {
+        final StringBuilder builder = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static final class Fingerprint {
+        final Object[] transformers;
+        final Object[] classpath;
+        final String value;
+
+        Fingerprint(Object[] transformers, Object[] classpath, String value) {
+            this.transformers = transformers;
+            this.classpath = classpath;
+            this.value = value;
+        }
+    }
+}
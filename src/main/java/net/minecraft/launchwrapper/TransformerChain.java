@@ -0,0 +1,159 @@
+package net.minecraft.launchwrapper;
+
+import java.util.Arrays;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Runs a routed transformer chain. Consecutive {@link IClassNodeTransformer}s share one parsed {@link ClassNode}, which
+ * is only written back to bytes when a byte[] transformer follows or the chain ends. A node transformer that sees
+ * another ClassNode class than this one, such as one from an ASM jar its loader defined, gets bytes instead.
+ */
+final class TransformerChain {
+    private static final int SKIP_FLAGS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+    /** Whether the ClassNode seen by a transformer class is the one shared nodes are made of. */
+    private static final ClassValue<Boolean> SHARES_CLASS_NODE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return Class.forName(ClassNode.class.getName(), false, type.getClassLoader()) == ClassNode.class;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+    };
+
+    private TransformerChain() {}
+
+    static byte[] run(IClassTransformer[] transformers, String name, String transformedName, byte[] basicClass) {
+        return run(transformers, name, transformedName, basicClass, null);
+    }
+
+    /** Runs the chain, reporting every transformer call to the given profiler unless it is null. */
+    static byte[] run(
+            IClassTransformer[] transformers,
+            String name,
+            String transformedName,
+            byte[] basicClass,
+            LoadProfiler profiler) {
+        ClassNode classNode = null;
+        int readerFlags = 0;
+        int writerFlags = 0;
+        boolean changed = false;
+        int groupStart = 0;
+        long nodeNanos = 0L;
+        for (int i = 0; i < transformers.length; i++) {
+            final IClassTransformer transformer = transformers[i];
+            if (sharesClassNode(transformer) && (classNode != null || basicClass != null)) {
+                final IClassNodeTransformer nodeTransformer = (IClassNodeTransformer) transformer;
+                if (classNode == null) {
+                    final long start = profiler != null ? System.nanoTime() : 0L;
+                    readerFlags = readerFlags(transformers, i);
+                    classNode = new ClassNode();
+                    new ClassReader(basicClass).accept(classNode, readerFlags);
+                    writerFlags = 0;
+                    changed = false;
+                    groupStart = i;
+                    nodeNanos = profiler != null ? System.nanoTime() - start : 0L;
+                }
+                final long start = profiler != null ? System.nanoTime() : 0L;
+                final boolean transformed = nodeTransformer.transform(name, transformedName, classNode);
+                if (transformed) {
+                    writerFlags |= nodeTransformer.getWriterFlags();
+                    changed = true;
+                }
+                if (profiler != null) {
+                    profiler.transformed(transformer, start, basicClass.length, -1, transformed);
+                }
+            } else {
+                if (classNode != null) {
+                    basicClass = finish(
+                            classNode,
+                            readerFlags,
+                            writerFlags,
+                            changed,
+                            basicClass,
+                            profiler,
+                            transformers,
+                            groupStart,
+                            i,
+                            nodeNanos);
+                    classNode = null;
+                }
+                if (profiler == null) {
+                    basicClass = transformer.transform(name, transformedName, basicClass);
+                } else {
+                    final long start = System.nanoTime();
+                    final byte[] transformed = transformer.transform(name, transformedName, basicClass);
+                    profiler.transformed(
+                            transformer,
+                            start,
+                            basicClass == null ? 0 : basicClass.length,
+                            transformed == null ? 0 : transformed.length,
+                            transformed != basicClass && !Arrays.equals(transformed, basicClass));
+                    basicClass = transformed;
+                }
+            }
+        }
+        if (classNode != null) {
+            basicClass = finish(
+                    classNode,
+                    readerFlags,
+                    writerFlags,
+                    changed,
+                    basicClass,
+                    profiler,
+                    transformers,
+                    groupStart,
+                    transformers.length,
+                    nodeNanos);
+        }
+        return basicClass;
+    }
+
+    /** Writes a shared ClassNode back to bytes if any transformer changed it. */
+    private static byte[] finish(
+            ClassNode classNode,
+            int readerFlags,
+            int writerFlags,
+            boolean changed,
+            byte[] basicClass,
+            LoadProfiler profiler,
+            IClassTransformer[] transformers,
+            int from,
+            int to,
+            long nodeNanos) {
+        final long start = profiler != null ? System.nanoTime() : 0L;
+        final byte[] written = changed ? write(classNode, readerFlags, writerFlags) : basicClass;
+        if (profiler != null) {
+            profiler.nodeWritten(
+                    transformers, from, to, nodeNanos + System.nanoTime() - start, basicClass.length, written.length);
+        }
+        return written;
+    }
+
+    private static int readerFlags(IClassTransformer[] transformers, int start) {
+        int expand = 0;
+        int skip = SKIP_FLAGS;
+        for (int i = start; i < transformers.length && sharesClassNode(transformers[i]); i++) {
+            final int flags = ((IClassNodeTransformer) transformers[i]).getReaderFlags();
+            expand |= flags & ClassReader.EXPAND_FRAMES;
+            skip &= flags;
+        }
+        return expand | skip;
+    }
+
+    private static boolean sharesClassNode(IClassTransformer transformer) {
+        return transformer instanceof IClassNodeTransformer && SHARES_CLASS_NODE.get(transformer.getClass());
+    }
+
+    private static byte[] write(ClassNode classNode, int readerFlags, int writerFlags) {
+        if ((readerFlags & ClassReader.SKIP_FRAMES) != 0) {
+            writerFlags |= ClassWriter.COMPUTE_FRAMES;
+        }
+        final ClassWriter writer = new LaunchClassWriter(writerFlags);
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,128 @@
+package net.minecraft.launchwrapper;
+
+import java.util.*;
+
+/**
+ * Dispatch table built from a snapshot of the transformer list, routing each class only to the transformers that
+ * apply to it. Transformers without {@link IClassTransformerTargets} are routed every class.
+ */
+final class TransformerDispatch {
+    static final TransformerDispatch EMPTY = new TransformerDispatch(new IClassTransformer[0]);
+
+    private final IClassTransformer[] all;
+    private final IClassTransformer[] untargeted;
+    private final IClassTransformerTargets[] targets;
+    private final Map<String, int[]> classTargets = new HashMap<>();
+    private final String[] packagePrefixes;
+    private final int[][] packageTargets;
+
+    private TransformerDispatch(IClassTransformer[] all) {
+        this.all = all;
+        this.targets = new IClassTransformerTargets[all.length];
+        final List<IClassTransformer> untargeted = new ArrayList<>(all.length);
+        final Map<String, List<Integer>> classes = new HashMap<>();
+        final Map<String, List<Integer>> packages = new LinkedHashMap<>();
+        for (int i = 0; i < all.length; i++) {
+            if (!(all[i] instanceof IClassTransformerTargets)) {
+                untargeted.add(all[i]);
+                continue;
+            }
+            targets[i] = (IClassTransformerTargets) all[i];
+            final String[] targetClasses = targets[i].getTargetClasses();
+            if (targetClasses != null) {
+                for (String targetClass : targetClasses) {
+                    classes.computeIfAbsent(targetClass, k -> new ArrayList<>()).add(i);
+                }
+            }
+            final String[] targetPackages = targets[i].getTargetPackages();
+            if (targetPackages != null) {
+                for (String targetPackage : targetPackages) {
+                    final String prefix = targetPackage.endsWith(".") ? targetPackage : targetPackage + ".";
+                    packages.computeIfAbsent(prefix, k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        this.untargeted = untargeted.toArray(new IClassTransformer[0]);
+        for (Map.Entry<String, List<Integer>> entry : classes.entrySet()) {
+            classTargets.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        this.packagePrefixes = packages.keySet().toArray(new String[0]);
+        this.packageTargets = new int[packagePrefixes.length][];
+        for (int i = 0; i < packagePrefixes.length; i++) {
+            packageTargets[i] = toArray(packages.get(packagePrefixes[i]));
+        }
+    }
+
+    /** Returns this table if it was built from exactly the given transformers, otherwise a rebuilt one. */
+    TransformerDispatch update(IClassTransformer[] transformers) {
+        if (transformers == all) {
+            return this;
+        }
+        if (transformers.length == all.length) {
+            for (int i = 0; i < transformers.length; i++) {
+                if (transformers[i] != all[i]) {
+                    return new TransformerDispatch(transformers);
+                }
+            }
+            return this;
+        }
+        return new TransformerDispatch(transformers);
+    }
+
+    /** Returns the transformers to run on the given class, in registration order. */
+    IClassTransformer[] route(String name, String transformedName) {
+        if (untargeted.length == all.length) {
+            return all;
+        }
+
+        boolean[] selected = null;
+        final int[] exact = classTargets.get(transformedName);
+        if (exact != null) {
+            selected = select(selected, exact);
+        }
+        for (int i = 0; i < packagePrefixes.length; i++) {
+            if (transformedName.startsWith(packagePrefixes[i])) {
+                selected = select(selected, packageTargets[i]);
+            }
+        }
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] != null
+                    && (selected == null || !selected[i])
+                    && targets[i].isTargetClass(name, transformedName)) {
+                if (selected == null) {
+                    selected = new boolean[all.length];
+                }
+                selected[i] = true;
+            }
+        }
+        if (selected == null) {
+            return untargeted;
+        }
+
+        final List<IClassTransformer> routed = new ArrayList<>(all.length);
+        for (int i = 0; i < all.length; i++) {
+            if (targets[i] == null || selected[i]) {
+                routed.add(all[i]);
+            }
+        }
+        return routed.toArray(new IClassTransformer[0]);
+    }
+
+    private boolean[] select(boolean[] selected, int[] indices) {
+        if (selected == null) {
+            selected = new boolean[all.length];
+        }
+        for (int index : indices) {
+            selected[index] = true;
+        }
+        return selected;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,138 @@
+package net.minecraft.launchwrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * LaunchClassLoader's list of registered transformers. It stays a plain ArrayList with fully working iterators, since
+ * mods filter and wrap it through reflection. Every change is made under the list's lock, and class loading only reads
+ * {@link #snapshot()}, so loading threads never iterate the list while it changes.
+ */
+final class TransformerList extends ArrayList<IClassTransformer> {
+    private static final long serialVersionUID = 1L;
+    private static final IClassTransformer[] NONE = new IClassTransformer[0];
+
+    /** The elements as of the last change, or null if the list changed since it was last taken. */
+    private transient volatile IClassTransformer[] snapshot = NONE;
+
+    /** Returns the current elements, as the same array until the list changes. The array must not be modified. */
+    IClassTransformer[] snapshot() {
+        IClassTransformer[] elements = snapshot;
+        if (elements == null) {
+            synchronized (this) {
+                elements = snapshot;
+                if (elements == null) {
+                    elements = toArray(NONE);
+                    snapshot = elements;
+                }
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a) {
+        return super.toArray(a);
+    }
+
+    @Override
+    public synchronized boolean add(IClassTransformer transformer) {
+        final boolean changed = super.add(transformer);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized void add(int index, IClassTransformer transformer) {
+        super.add(index, transformer);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends IClassTransformer> transformers) {
+        final boolean changed = super.addAll(transformers);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized boolean addAll(int index, Collection<? extends IClassTransformer> transformers) {
+        final boolean changed = super.addAll(index, transformers);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized IClassTransformer set(int index, IClassTransformer transformer) {
+        final IClassTransformer previous = super.set(index, transformer);
+        snapshot = null;
+        return previous;
+    }
+
+    @Override
+    public synchronized IClassTransformer remove(int index) {
+        final IClassTransformer removed = super.remove(index);
+        snapshot = null;
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean remove(Object transformer) {
+        final boolean changed = super.remove(transformer);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> transformers) {
+        final boolean changed = super.removeAll(transformers);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> transformers) {
+        final boolean changed = super.retainAll(transformers);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super IClassTransformer> filter) {
+        final boolean changed = super.removeIf(filter);
+        snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized void replaceAll(UnaryOperator<IClassTransformer> operator) {
+        super.replaceAll(operator);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void sort(Comparator<? super IClassTransformer> comparator) {
+        super.sort(comparator);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        snapshot = null;
+    }
+
+    @Override
+    protected synchronized void removeRange(int fromIndex, int toIndex) {
+        super.removeRange(fromIndex, toIndex);
+        snapshot = null;
+    }
+}
@@ -5,8 +5,10 @@ import static org.objectweb.asm.Opcodes.*;
 import java.io.File;
 import java.util.ListIterator;
 import javax.imageio.ImageIO;
+import net.minecraft.launchwrapper.ClassHeader;
 import net.minecraft.launchwrapper.IClassTransformer;
 import net.minecraft.launchwrapper.Launch;
+import net.minecraft.launchwrapper.LaunchClassWriter;
 import org.objectweb.asm.*;
 import org.objectweb.asm.tree.*;
 
@@ -18,15 +20,14 @@ public class IndevVanillaTweakInjector implements IClassTransformer {
         if (bytes == null) {
             return null;
         }
+        if (!ClassHeader.of(bytes).hasInterface("java/lang/Runnable")) {
+            return bytes;
+        }
 
         final ClassNode classNode = new ClassNode();
         final ClassReader classReader = new ClassReader(bytes);
         classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
 
-        if (!classNode.interfaces.contains("java/lang/Runnable")) {
-            return bytes;
-        }
-
         MethodNode runMethod = null;
         for (final MethodNode methodNode : classNode.methods) {
             if ("run".equals(methodNode.name)) {
@@ -79,7 +80,7 @@ public class IndevVanillaTweakInjector implements IClassTransformer {
             }
         }
 
-        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        final ClassWriter writer = new LaunchClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         classNode.accept(writer);
         return writer.toByteArray();
     }
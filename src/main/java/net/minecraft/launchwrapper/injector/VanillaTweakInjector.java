@@ -10,7 +10,8 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import javax.imageio.ImageIO;
-import net.minecraft.launchwrapper.IClassTransformer;
+import net.minecraft.launchwrapper.IClassNodeTransformer;
+import net.minecraft.launchwrapper.IClassTransformerTargets;
 import net.minecraft.launchwrapper.Launch;
 import org.lwjgl.opengl.Display;
 import org.objectweb.asm.ClassReader;
@@ -19,22 +20,30 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
-public class VanillaTweakInjector implements IClassTransformer {
+public class VanillaTweakInjector implements IClassNodeTransformer, IClassTransformerTargets {
     public VanillaTweakInjector() {}
 
     @Override
-    public byte[] transform(final String name, final String transformedName, final byte[] bytes) {
-        if (bytes == null) {
-            return null;
-        }
+    public String[] getTargetClasses() {
+        return new String[] {"net.minecraft.client.Minecraft"};
+    }
+
+    @Override
+    public int getReaderFlags() {
+        return ClassReader.EXPAND_FRAMES;
+    }
+
+    @Override
+    public int getWriterFlags() {
+        return ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES;
+    }
+
+    @Override
+    public boolean transform(final String name, final String transformedName, final ClassNode classNode) {
         if (!"net.minecraft.client.Minecraft".equals(name)) {
-            return bytes;
+            return false;
         }
 
-        final ClassNode classNode = new ClassNode();
-        final ClassReader classReader = new ClassReader(bytes);
-        classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
-
         MethodNode mainMethod = null;
         for (final MethodNode methodNode : classNode.methods) {
             if ("main".equals(methodNode.name)) {
@@ -44,7 +53,7 @@ public class VanillaTweakInjector implements IClassTransformer {
         }
         if (mainMethod == null) {
             // WTF? We got no main method
-            return bytes;
+            return false;
         }
 
         FieldNode workDirNode = null;
@@ -71,10 +80,7 @@ public class VanillaTweakInjector implements IClassTransformer {
         injectedMethod.visitFieldInsn(PUTSTATIC, "net/minecraft/client/Minecraft", workDirNode.name, "Ljava/io/File;");
 
         mainMethod.instructions.insert(injectedMethod.instructions);
-
-        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-        classNode.accept(writer);
-        return writer.toByteArray();
+        return true;
     }
 
     public static File inject() {